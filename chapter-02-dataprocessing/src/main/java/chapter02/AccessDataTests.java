@@ -12,29 +12,38 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import org.jooq.lambda.tuple.Tuple2;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
-import com.aol.cyclops.control.LazyReact;
 import com.fasterxml.jackson.jr.ob.JSON;
 import com.google.common.collect.Lists;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.ReadContext;
 import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
 
+import chapter02.csv.PersonCsvReader;
+import chapter02.jdbc.DataSources;
+import chapter02.jdbc.PeopleBulkLoader;
+import chapter02.jdbc.PeopleByCountryCache;
+import chapter02.jdbc.PeopleDao;
+import chapter02.jdbc.PeopleQueries;
+import chapter02.table.DictionaryEncoder;
+import chapter02.table.PersonTable;
+import chapter02.table.TypedCsvLoader;
+import chapter02.table.TypedFrame;
 import joinery.DataFrame;
 
 public class AccessDataTests {
@@ -103,6 +112,23 @@ public class AccessDataTests {
 		}
 		System.out.println(result3);
 		
+		// CSV 에서 내용 읽어 오기 - 메모리 맵으로 바이트 단위 파싱
+		System.out.println("=========================== CSV 에서 내용 읽어 오기 - 메모리 맵으로 바이트 단위 파싱");
+		List<Person> mapped = PersonCsvReader.csv().read(csvFile);
+		List<Person> mappedTab = PersonCsvReader.tsv().read(csvFile2);
+		List<Person> parallel = PersonCsvReader.csv().readParallel(csvFile, Runtime.getRuntime().availableProcessors());
+		System.out.println(mapped.size() + " " + mappedTab.size() + " " + parallel.size());
+		int[][] numeric = PersonCsvReader.csv().readNumeric(csvFile);
+		System.out.println("salary: " + Arrays.stream(numeric[0]).average().orElse(0.0));
+		
+		// CSV 에서 내용 읽어 오기 - 열 단위 저장 (국가는 사전 인코딩)
+		System.out.println("=========================== CSV 에서 내용 읽어 오기 - 열 단위 저장 (국가는 사전 인코딩)");
+		PersonTable table = PersonTable.read(csvFile, ',');
+		int[] egypt = table.whereCountry("Egypt");
+		System.out.println(table.get(egypt));
+		System.out.println("mean salary: " + table.mean(PersonTable.Column.SALARY, egypt));
+		System.out.println(table.meanByCountry(PersonTable.Column.SALARY));
+		
 		// Jsoup 사용 웹 크롤링
 		System.out.println("=========================== Jsoup 사용 웹 크롤링");
 		Map<String, Double> result4 = new HashMap<>();
@@ -149,11 +175,7 @@ public class AccessDataTests {
 		
 		// 데이터베이스 접속
 		System.out.println("=========================== 데이터베이스 접속");
-		MysqlDataSource datasource = new MysqlDataSource();
-		datasource.setServerName("localhost");
-		datasource.setDatabaseName("people");
-		datasource.setUser("root");
-		datasource.setPassword("abc123");
+		MysqlDataSource datasource = DataSources.mysql("localhost", "people", "root", "abc123");
 		
 		// 데이터베이스 데이터 적재 - 다음 테스트를 위한 테이블 초기화
 		System.out.println("=========================== 데이터베이스 데이터 적재 - 다음 테스트를 위한 테이블 초기화");
@@ -211,6 +233,12 @@ public class AccessDataTests {
 			}
 		}
 		
+		// 데이터베이스 데이터 적재 - 여러 연결로 병렬 적재
+		System.out.println("=========================== 데이터베이스 데이터 적재 - 여러 연결로 병렬 적재");
+		PeopleBulkLoader loader = new PeopleBulkLoader(datasource, 4, 1000, 10, 16);
+		loader.deleteAll();
+		System.out.println(loader.load(result));
+		
 		// 데이터베이스 질의문 실행
 		System.out.println("=========================== 데이터베이스 질의문 실행");
 		String country = "Greenland";
@@ -235,25 +263,55 @@ public class AccessDataTests {
 			}
 		}
 		
+		// 데이터베이스 질의문 실행 - 커서로 조금씩 읽는 스트림
+		System.out.println("=========================== 데이터베이스 질의문 실행 - 커서로 조금씩 읽는 스트림");
+		PeopleQueries queries = new PeopleQueries(datasource);
+		try (Stream<Person> people = queries.byCountry(country)) {
+			people.forEach(System.out::println);
+		}
+		
+		// 데이터베이스 질의문 실행 - 연결 풀과 준비된 문장 캐시
+		System.out.println("=========================== 데이터베이스 질의문 실행 - 연결 풀과 준비된 문장 캐시");
+		try (PeopleDao dao = new PeopleDao(datasource)) {
+			for (Person person : result) {
+				dao.findByCountry(person.getCountry());
+			}
+			System.out.println(dao.countByCountry(country));
+			System.out.println(dao.getMetrics());
+			
+			// 데이터베이스 질의문 실행 - 국가별 조회 캐시
+			System.out.println("=========================== 데이터베이스 질의문 실행 - 국가별 조회 캐시");
+			PeopleByCountryCache cache = new PeopleByCountryCache(dao);
+			loader.addListener(cache);
+			for (int i = 0; i < 10; i++) {
+				cache.get(country);
+			}
+			System.out.println(cache);
+		}
+		
 		// 데이터프레임 - joinery 사용 읽기
 		System.out.println("=========================== 데이터프레임 - joinery 사용 읽기");
 		DataFrame<Object> df = DataFrame
 				.readCsv("data/csv-example-generatedata_com.csv");
 		System.out.println(df);
 		
+		// 데이터프레임 - 유형을 추론해서 기본형 열로 읽기
+		System.out.println("=========================== 데이터프레임 - 유형을 추론해서 기본형 열로 읽기");
+		TypedFrame typed = new TypedCsvLoader()
+				.withType("experience", TypedFrame.Type.DOUBLE)
+				.load(csvFile);
+		System.out.println(typed);
+		System.out.println(typed.toDataFrame());
+		
 		// 데이터프레임 - 국가별 인덱스 생성
 		System.out.println("=========================== 데이터프레임 - 국가별 인덱스 생성");
 		List<Object> contries = df.col("country");
-		Map<String, Long> contriesmap = LazyReact
-				.sequentialBuilder()
-				.from(contries)
-				.cast(String.class)
-				.distinct()
-				.zipWithIndex()
-				.toMap(Tuple2::v1, Tuple2::v2);
-		List<Object> indexes = contries.stream()
-				.map(contriesmap::get)
-				.collect(Collectors.toList());
+		DictionaryEncoder encoder = new DictionaryEncoder();
+		int[] codes = encoder.encode(contries);
+		List<Object> indexes = new ArrayList<>(codes.length);
+		for (int code : codes) {
+			indexes.add(code);
+		}
 		System.out.println(indexes);
 		
 		// 데이터프레임 - 기존 열 삭제 후 새로운 열로 대체
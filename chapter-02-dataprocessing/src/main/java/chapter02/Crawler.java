@@ -1,112 +1,213 @@
 package chapter02;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.stream.Stream;
 
-import org.apache.commons.io.FileUtils;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
-import org.mapdb.HTreeMap;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import chapter02.crawler.CrawlEngine;
+import chapter02.crawler.CrawlFrontier;
+import chapter02.crawler.CrawlFrontier.Status;
+import chapter02.crawler.CrawlMetrics;
+import chapter02.crawler.FetchClient;
+import chapter02.crawler.FetchResult;
+import chapter02.crawler.FetchResult.Validators;
+import chapter02.crawler.HostScheduler;
+import chapter02.crawler.HtmlFeatureExtractor;
+import chapter02.crawler.PageStore;
+import chapter02.crawler.PipelineStage;
+import chapter02.crawler.RankedPageWriter;
+import chapter02.crawler.SerpIndex;
+import chapter02.crawler.UrlCanonicalizer;
+
 public class Crawler {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(Crawler.class);
 	
-	public static void main(String[] args) throws IOException {
-		// MapDB 생성
-		DB db = DBMaker.fileDB("urls.db").closeOnJvmShutdown().make();
-		HTreeMap<?, ?> htreeMap = db.hashMap("urls").createOrOpen();
-		Map<String, String> urls = (Map<String, String>) htreeMap;
+	private static final int MAX_IN_FLIGHT = 64;
+	private static final int MAX_SCHEDULED = MAX_IN_FLIGHT * 4;
+	private static final long TIMEOUT_SECONDS = 30;
+	private static final int DICTIONARY_SAMPLES = 500;
+	private static final int MAX_PER_HOST = 2;
+	private static final double REQUESTS_PER_SECOND_PER_HOST = 1.0;
+	private static final int EXTRACT_THREADS = Runtime.getRuntime().availableProcessors();
+	private static final int WRITE_THREADS = 1;
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final long METRICS_PERIOD_SECONDS = 10;
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		// 압축 저장소(MapDB) 생성
+		PageStore urls = new PageStore("urls.db");
 		
-		// 연관 URL을 읽어 HTML를 MapDB에 저장
-		Path path = Paths.get("data/search-results.txt");
-		List<String> lines = FileUtils.readLines(path.toFile(), StandardCharsets.UTF_8);
-		lines.parallelStream()
-			.map(line -> line.split("\t"))
-			.map(split -> "http://" + split[2])
-			.distinct()
-				.forEach(url -> {
-					try {
-						Optional<String> html = crawl(url);
-						if (html.isPresent()) {
-							LOGGER.debug("successfully crawled {}", url);
-							urls.put(url, html.get());
+		// JDK keep-alive 캐시의 호스트별 유휴 연결 수, JVM 전체 설정이므로 첫 연결 전에 정한다
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", String.valueOf(MAX_PER_HOST));
+		}
+		FetchClient client = new FetchClient();
+		
+		// 크롤링 지표를 JMX로 노출하고 주기적으로 파일에 기록
+		CrawlMetrics metrics = new CrawlMetrics();
+		metrics.registerMBean();
+		metrics.startReporting(Paths.get("crawl-metrics.json"), METRICS_PERIOD_SECONDS, TimeUnit.SECONDS);
+		
+		// 수집 → 특징 추출 → JSON 기록 단계를 대기열로 연결해 네트워크 대기와 CPU 작업을 겹친다
+		try (SerpIndex serp = new SerpIndex();
+				RankedPageWriter writer = new RankedPageWriter(Paths.get("ranked-pages.json"), false);
+				PipelineStage<RankedPage> persist = new PipelineStage<>("persist", WRITE_THREADS, 
+						QUEUE_CAPACITY, writer::write);
+				PipelineStage<Pair<String, byte[]>> extract = new PipelineStage<>("extract", EXTRACT_THREADS, 
+						QUEUE_CAPACITY, task -> extract(task, serp, urls, persist));
+				CrawlFrontier frontier = new CrawlFrontier("frontier.db");
+				CrawlEngine engine = new CrawlEngine(MAX_IN_FLIGHT, TIMEOUT_SECONDS, TimeUnit.SECONDS,
+						url -> fetch(client, url, urls.getValidators(url), metrics))) {
+			// 프런티어보다 페이지를 먼저 커밋해야 DONE으로 커밋된 URL의 페이지가 사라지지 않는다
+			frontier.beforeCheckpoint(urls::commit);
+			metrics.registerGauge("queue.extract", extract::queueDepth);
+			metrics.registerGauge("queue.persist", persist::queueDepth);
+			metrics.registerGauge("engine.in_flight", engine::inFlight);
+			metrics.registerGauge("engine.deadline_timeouts", engine::timeouts);
+			metrics.registerGauge("pages.written", writer::getWritten);
+			if (Arrays.asList(args).contains("--recrawl")) {
+				LOGGER.info("requeued {} crawled urls", frontier.requeueDone());
+			}
+			// 연관 URL을 한 줄씩 읽어 프런티어에 넣고, (질의어, 순위)는 디스크 기반 색인에 둔다
+			Path path = Paths.get("data/search-results.txt");
+			try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] split = line.split("\t");
+					String url = UrlCanonicalizer.canonicalize("http://" + split[2]);
+					serp.add(url, split[0], Integer.parseInt(split[1]));
+					frontier.add(url);
+				}
+			}
+			// 이전 실행에서 이미 받은 페이지는 다시 가져오지 않고 바로 특징 추출로 보낸다
+			Iterator<String> serpUrls = serp.urls();
+			while (serpUrls.hasNext()) {
+				String url = serpUrls.next();
+				if (frontier.get(url).getStatus() == Status.DONE && urls.containsKey(url)) {
+					extract.submit(Pair.of(url, null));
+				}
+			}
+			LOGGER.info("frontier state: {}", frontier.counts());
+			
+			// 호스트별 동시 요청 수와 요청 속도를 제한하면서 호스트를 번갈아 가며 요청
+			HostScheduler scheduler = new HostScheduler(MAX_PER_HOST, REQUESTS_PER_SECOND_PER_HOST, MAX_PER_HOST);
+			metrics.registerGauge("queue.scheduler", scheduler::queued);
+			while (!frontier.isExhausted()) {
+				// 스케줄러에는 일정 수만 옮겨서 메모리와 IN_FLIGHT 상태인 URL 수를 제한한다
+				while (scheduler.queued() < MAX_SCHEDULED) {
+					String ready = frontier.take(0, TimeUnit.MILLISECONDS);
+					if (ready == null) {
+						break;
+					}
+					scheduler.add(ready);
+				}
+				String url = scheduler.take(100, TimeUnit.MILLISECONDS);
+				if (url == null) {
+					continue;
+				}
+				engine.submit(url, (crawled, result) -> {
+					byte[] html = null;
+					if (result.isNotModified()) {
+						LOGGER.debug("not modified since last crawl {}", crawled);
+					} else {
+						html = result.getBody().getBytes(StandardCharsets.UTF_8);
+						long start = System.nanoTime();
+						urls.put(crawled, html);
+						metrics.recordStoreWrite(System.nanoTime() - start);
+						if (!result.getValidators().isEmpty()) {
+							urls.putValidators(crawled, result.getValidators());
 						}
-					} catch (Exception e) {
-						LOGGER.error("got exception when processing url {}", url, e);
+						LOGGER.debug("successfully crawled {}", crawled);
+					}
+					try {
+						extract.submit(Pair.of(crawled, html));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}).thenAccept(result -> {
+					scheduler.release(url);
+					if (result.isPresent()) {
+						frontier.markDone(url);
+					} else {
+						frontier.markFailed(url, "timeout or fetch error");
 					}
 				});
+			}
+			LOGGER.info("frontier state: {}", frontier.counts());
+		}
 		
-		// 페이지 크롤링 및 RankedPage 객체 생성
-		Stream<RankedPage> pages = lines.parallelStream().flatMap(line -> {
-			String[] split = line.split("\t");
-			String query = split[0];
-			int position = Integer.parseInt(split[1]);
+		if (!urls.hasDictionary()) {
+			// 이미 받은 페이지로 공유 사전을 학습해 다음 크롤링부터 사용
+			urls.trainDictionary(DICTIONARY_SAMPLES);
+		}
+		urls.commit();
+		LOGGER.info("page store: {}", urls.stats());
+		metrics.stopReporting();
+		metrics.report(Paths.get("crawl-metrics.json"), false);
+		LOGGER.info("crawl metrics: {}", metrics.snapshot());
+	}
+	
+	private static FetchResult fetch(FetchClient client, String url, Validators validators, CrawlMetrics metrics)
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			FetchResult result = client.fetch(url, validators);
+			metrics.recordFetch(url, result, System.nanoTime() - start);
+			return result;
+		} catch (IOException | RuntimeException e) {
+			metrics.recordFailure(url, e, System.nanoTime() - start);
+			throw e;
+		}
+	}
+	
+	private static void extract(Pair<String, byte[]> task, SerpIndex serp, PageStore urls,
+			PipelineStage<RankedPage> persist) {
+		String url = task.getLeft();
+		byte[] html = task.getRight() != null ? task.getRight() : urls.getBytes(url);
+		if (html == null) { // no crawl available
+			return;
+		}
+		for (SerpIndex.Hit hit : serp.get(url)) {
+			String query = hit.getQuery();
+			int position = hit.getPosition();
 			int searchPageNumber = 1 + (position - 1) / 10; // converts position to a page number
-			String url = "http://" + split[2];
-			if (!urls.containsKey(url)) { // no crawl available
-				return Stream.empty();
-			}
 			RankedPage page = new RankedPage(url, position, searchPageNumber);
-			String html = urls.get(url);
-			Document document = Jsoup.parse(html);
-			String title = document.title();
-			int titleLength = title.length();
-			page.setTitleLength(titleLength);
-			boolean queryInTitle = title.toLowerCase().contains(query.toLowerCase());
-			page.setQueryInTitle(queryInTitle);
-			if (document.body() == null) { // no body for the document
-				return Stream.empty();
+			// DOM을 만들지 않고 한 번의 스캔으로 특징 추출
+			HtmlFeatureExtractor.extract(query, html, page);
+			try {
+				persist.submit(page);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
 			}
-			int bodyContentLength = document.body().text().length();
-			page.setBodyContentLength(bodyContentLength);
-			int numberOfLinks = document.body().select("a").size();
-			page.setNumberOfLinks(numberOfLinks);
-			int numberOfHeaders = document.body().select("h1,h2,h3,h4,h5,h6").size();
-			page.setNumberOfHeaders(numberOfHeaders);
-			return Stream.of(page);
-		});
+		}
 	}
 	
-	public static Optional crawl(String url) {
-		// executor 선언
-		int numProc = Runtime.getRuntime().availableProcessors();
-		ExecutorService executor = Executors.newFixedThreadPool(numProc);
-
-		// executor 사용
-		int timeout = 30;
+	public static Optional<String> crawl(CrawlEngine engine, String url) {
+		// 호출한 쪽의 엔진을 사용하므로 호출할 때마다 스레드 풀을 만들지 않는다
 		try {
-			Future<String> future = executor.submit(() -> UrlUtils.request(url));
-			String result = future.get(timeout, TimeUnit.SECONDS);
-			return Optional.of(result);
-		} catch (TimeoutException e) {
-			LOGGER.warn("timeout exception: could not crawl {} in {} sec", url, timeout);
-			return Optional.empty();
+			return engine.submit(url, (crawled, result) -> {}).get().map(FetchResult::getBody);
 		} catch (InterruptedException e) {
-			LOGGER.warn("interrupted exception:");
+			Thread.currentThread().interrupt();
+			LOGGER.warn("interrupted exception: could not crawl {}", url);
 			return Optional.empty();
 		} catch (ExecutionException e) {
-			LOGGER.warn("execution exception:");
+			LOGGER.warn("execution exception: could not crawl {}", url, e.getCause());
 			return Optional.empty();
 		}
-		
-		
 	}
 
 }
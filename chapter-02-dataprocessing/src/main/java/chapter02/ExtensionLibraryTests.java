@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -23,16 +24,14 @@ import org.jooq.lambda.tuple.Tuple2;
 import com.aol.cyclops.control.LazyReact;
 import com.aol.cyclops.types.futurestream.LazyFutureStream;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Multiset;
-import com.google.common.collect.Multisets;
 import com.google.common.collect.Ordering;
-import com.google.common.collect.Table;
 import com.google.common.io.CharSource;
 import com.google.common.io.Files;
-import com.google.common.primitives.Ints;
+
+import chapter02.count.CooccurrenceMatrix;
+import chapter02.count.ObjectIntCounter;
+import chapter02.count.TopK;
+import chapter02.table.Corpus;
 
 public class ExtensionLibraryTests {
 
@@ -54,22 +53,27 @@ public class ExtensionLibraryTests {
 		List<String> lines = wordsSource.readLines();
 		System.out.println(lines);
 		
-		// Lists 클래스의 transform 메소드
-		List<Word> words = Lists.transform(lines, line -> {
-			String[] split = line.split("\t");
-			return new Word(split[0].toLowerCase(), split[1]);
-		});
+		// 심볼 테이블 코퍼스 - 한 번만 파싱해서 토큰 ID와 품사 코드로 저장하고, Word는 뷰로 꺼낸다
+		Corpus corpus = Corpus.read(file.toPath(), true);
+		List<Word> words = corpus.asWords();
+		System.out.println(corpus);
 		System.out.println(words);
 		
-		// Multiset을 사용한 품사별 개수 세기
-		Multiset<String> pos = HashMultiset.create();
+		// 기본형 카운터를 사용한 품사별 개수 세기
+		ObjectIntCounter<String> pos = new ObjectIntCounter<>();
 		for (Word word : words) {
 			pos.add(word.getPos());
 		}
 		System.out.println(pos);
 		
-		// Multiset 빈도 순 정렬
-		Multiset<String> sortedPos = Multisets.copyHighestCountFirst(pos);
+		// 코퍼스에서는 품사 코드를 배열 인덱스로 써서 센다
+		int[] posCounts = corpus.countByPos();
+		for (int code = 0; code < posCounts.length; code++) {
+			System.out.println(corpus.getPosDictionary().decode(code) + "=" + posCounts[code]);
+		}
+		
+		// 빈도 순 정렬 - 상위 N개만 추출
+		List<ObjectIntCounter.Entry<String>> sortedPos = pos.topN(pos.size());
 		System.out.println(sortedPos);
 		
 		// 품사별 단어 목록 확인
@@ -83,30 +87,32 @@ public class ExtensionLibraryTests {
 		Map<String, Collection<String>> wordsByPosMap = wordsByPos.asMap();
 		wordsByPosMap.entrySet().forEach(System.out::println);
 		
-		// Table 객체를 사용한 (단어, 품사) 쌍 개수 확인
-		Table<String, String, Integer> table = HashBasedTable.create();
-		for (Word word : words) {
-			Integer cnt = table.get(word.getPos(), word.getToken());
-			if (cnt == null) {
-				cnt = 0;
-			}
-			table.put(word.getPos(), word.getToken(), cnt + 1);
+		// 희소 행렬을 사용한 (품사, 단어) 쌍 개수 확인
+		// 코퍼스의 심볼 테이블을 행렬과 공유하면 문자열 조회 없이 ID로 바로 센다
+		CooccurrenceMatrix table = new CooccurrenceMatrix(corpus.getPosDictionary(), corpus.getTokenDictionary());
+		for (int i = 0; i < corpus.size(); i++) {
+			table.add(corpus.posCode(i), corpus.tokenId(i), 1);
 		}
 		System.out.println(table);
 		
-		// Table 객체의 행, 열 데이터 개별 접근
-		Map<String, Integer> nouns = table.row("NN");
-		System.out.println(nouns);
+		// 행, 열 데이터 개별 접근 - [0] ID, [1] 개수
+		int[][] nouns = table.row("NN");
+		System.out.println(Arrays.toString(nouns[1]));
 		String word = "eu";
-		Map<String, Integer> posTags = table.column(word);
-		System.out.println(posTags);
+		int[][] posTags = table.column(word);
+		for (int i = 0; i < posTags[0].length; i++) {
+			System.out.println(table.getRowIds().decode(posTags[0][i]) + "=" + posTags[1][i]);
+		}
 		
-		// 원시 데이터 형태의 컬렉션을 원시 데이터 배열로 변환
-		Collection<Integer> values = nouns.values();
-		int[] nounCounts = Ints.toArray(values);
-		int totalNounCount = Arrays.stream(nounCounts).sum();
+		// 개수가 이미 원시 데이터 배열이므로 복사 없이 합산
+		int totalNounCount = Arrays.stream(nouns[1]).sum();
 		System.out.println(totalNounCount);
 		
+		// 여러 스레드에서 나눠 센 뒤 합치기
+		CooccurrenceMatrix parallelTable = CooccurrenceMatrix.build(words, Word::getPos, Word::getToken,
+				Runtime.getRuntime().availableProcessors());
+		System.out.println(parallelTable.total() + " pairs, " + parallelTable.nonZeros() + " distinct");
+		
 		// Ordering을 사용한 정렬 작업
 		Ordering<Word> byTokenLength 
 			= Ordering.natural().<Word>onResultOf(w -> w.getToken().length()).reverse();
@@ -118,12 +124,28 @@ public class ExtensionLibraryTests {
 		Collections.sort(sortedCopy, byTokenLength);
 		System.out.println(sortedCopy);
 		
-		// 상위 10건, 하위 10건 반환 기능
-		List<Word> first10 = byTokenLength.leastOf(words, 10);
+		// 상위 10건, 하위 10건 반환 기능 - 정렬 없이 크기 10의 힙만 유지
+		List<Word> first10 = words.stream().collect(TopK.toLeast(10, byTokenLength));
 		System.out.println(first10);
-		List<Word> last10 = byTokenLength.greatestOf(words, 10);
+		List<Word> last10 = words.stream().collect(TopK.toGreatest(10, byTokenLength));
 		System.out.println(last10);
 		
+		// 파일을 한 번만 읽으면서 가장 긴 토큰 10개 - 줄마다 재사용하는 holder에 토큰만 복사
+		Comparator<StringBuilder> byLength = Comparator.comparingInt(StringBuilder::length);
+		LineIterator lineIt = FileUtils.lineIterator(file, "UTF-8");
+		try {
+			TopK<StringBuilder> longest = TopK.greatest(10, byLength, StringBuilder::new, (from, to) -> {
+				to.setLength(0);
+				to.append(from);
+			}).offerLinesParallel(lineIt, (line, holder) -> {
+				holder.setLength(0);
+				holder.append(line, 0, line.indexOf('\t'));
+			}, Runtime.getRuntime().availableProcessors());
+			System.out.println(longest);
+		} finally {
+			LineIterator.closeQuietly(lineIt);
+		}
+		
 		// AOL 싸이클롭스 리액트
 		LineIterator it = FileUtils.lineIterator(new File("data/words.txt"), "UTF-8");
 		ExecutorService executor = Executors.newCachedThreadPool();
@@ -16,6 +16,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
+import chapter02.io.LineTransformer;
+
 public class IOTests {
 
 	public static void main(String[] args) throws FileNotFoundException, IOException {
@@ -74,6 +76,12 @@ public class IOTests {
 				writer.newLine();
 			}
 		}
+		
+		// 결과 데이터 쓰기 - 블록 단위 병렬 변환
+		LineTransformer transformer = new LineTransformer();
+		LineTransformer.Stats stats = transformer.transform(path, Paths.get("output3.txt"),
+				line -> line.toUpperCase(Locale.US));
+		System.out.println(stats);
 	}
 
 }
@@ -13,6 +13,9 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import chapter02.io.TokenStats;
+import chapter02.table.Corpus;
+
 public class StreamingAPITests {
 
 	public static void main(String[] args) throws IOException {
@@ -55,6 +58,13 @@ public class StreamingAPITests {
 		System.out.println(groupByPos.get("VB"));
 		System.out.println(groupByPos.get("NN"));
 		
+		// 품사별 단어 분류 - 심볼 테이블 코퍼스의 기본형 버전, 품사 코드 → 단어 위치
+		Corpus corpus = Corpus.of(list);
+		int[][] positionsByPos = corpus.groupByPos();
+		int vb = corpus.getPosDictionary().codeOf("VB");
+		System.out.println(corpus.get(positionsByPos[vb]));
+		System.out.println(corpus.get(corpus.positionsOf("NN")));
+		
 		// 컬렉션 데이터로부터 필드 값 기준 인덱싱
 		Map<String, Word> tokenToWord = list.stream()
 				.collect(Collectors.toMap(Word::getToken, Function.identity()));
@@ -86,5 +96,10 @@ public class StreamingAPITests {
 					.average().getAsDouble();
 			System.out.println("average token length: " + average);
 		}
+		
+		// 메모리 맵 토크나이저 - 토큰마다 문자열을 만들지 않고 블록별로 나눠 통계 계산
+		TokenStats stats = TokenStats.compute(path);
+		System.out.println("average token length: " + stats.getMeanLength());
+		System.out.println(stats);
 	}
 }
\ No newline at end of file
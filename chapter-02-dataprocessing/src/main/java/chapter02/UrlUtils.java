@@ -1,20 +1,21 @@
 package chapter02;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 
-import org.apache.commons.io.IOUtils;
+import chapter02.crawler.FetchClient;
+import chapter02.crawler.FetchResult;
 
 public class UrlUtils {
 
+	private static final FetchClient CLIENT = new FetchClient();
+
 	public static String request(String url) {
-		try (InputStream is = new URL(url).openStream()) {
-			return IOUtils.toString(is, StandardCharsets.UTF_8);
-		} catch (MalformedURLException e) {
-			throw new RuntimeException(e);
+		try {
+			FetchResult result = CLIENT.fetch(url);
+			if (!result.isSuccessful()) {
+				throw new IOException("server returned HTTP " + result.getStatus() + " for URL: " + url);
+			}
+			return result.getBody();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -0,0 +1,49 @@
+package chapter02.count;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link ConcurrentObjectIntCounter}의 int 키 버전. 스레드마다 IntIntCounter 셀에 더하고
+ * 읽을 때 합친다.
+ */
+public class ConcurrentIntIntCounter {
+
+	private final List<IntIntCounter> cells = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<IntIntCounter> local = ThreadLocal.withInitial(() -> {
+		IntIntCounter cell = new IntIntCounter();
+		cells.add(cell);
+		return cell;
+	});
+
+	public void add(int key) {
+		add(key, 1);
+	}
+
+	public void add(int key, int delta) {
+		IntIntCounter cell = local.get();
+		synchronized (cell) {
+			cell.add(key, delta);
+		}
+	}
+
+	public void merge(IntIntCounter counter) {
+		IntIntCounter cell = local.get();
+		synchronized (cell) {
+			cell.merge(counter);
+		}
+	}
+
+	/**
+	 * 모든 셀을 합친 새 카운터. 합치는 동안 들어온 증가분은 포함되지 않을 수 있다.
+	 */
+	public IntIntCounter sum() {
+		IntIntCounter result = new IntIntCounter();
+		for (IntIntCounter cell : cells) {
+			synchronized (cell) {
+				result.merge(cell);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,53 @@
+package chapter02.count;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 여러 스레드에서 동시에 세는 카운터. LongAdder처럼 스레드마다 자기 셀(ObjectIntCounter)에
+ * 더하고 읽을 때 모든 셀을 합친다. 셀의 잠금은 합칠 때만 경합하므로 증가 비용은 거의
+ * 단일 스레드 카운터와 같다.
+ */
+public class ConcurrentObjectIntCounter<K> {
+
+	private final List<ObjectIntCounter<K>> cells = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<ObjectIntCounter<K>> local = ThreadLocal.withInitial(() -> {
+		ObjectIntCounter<K> cell = new ObjectIntCounter<>();
+		cells.add(cell);
+		return cell;
+	});
+
+	public void add(K key) {
+		add(key, 1);
+	}
+
+	public void add(K key, int delta) {
+		ObjectIntCounter<K> cell = local.get();
+		synchronized (cell) {
+			cell.add(key, delta);
+		}
+	}
+
+	/**
+	 * 스레드에서 따로 센 카운터를 통째로 더한다.
+	 */
+	public void merge(ObjectIntCounter<K> counter) {
+		ObjectIntCounter<K> cell = local.get();
+		synchronized (cell) {
+			cell.merge(counter);
+		}
+	}
+
+	/**
+	 * 모든 셀을 합친 새 카운터. 합치는 동안 들어온 증가분은 포함되지 않을 수 있다.
+	 */
+	public ObjectIntCounter<K> sum() {
+		ObjectIntCounter<K> result = new ObjectIntCounter<>();
+		for (ObjectIntCounter<K> cell : cells) {
+			synchronized (cell) {
+				result.merge(cell);
+			}
+		}
+		return result;
+	}
+}
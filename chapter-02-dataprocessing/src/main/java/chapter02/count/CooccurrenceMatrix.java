@@ -0,0 +1,277 @@
+package chapter02.count;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.Validate;
+
+import chapter02.table.StringDictionary;
+
+/**
+ * (행, 열) 쌍의 개수를 세는 희소 행렬. 행과 열 값은 각각 {@link StringDictionary}로 정수 ID가 되고,
+ * 행마다 열 ID → 개수를 {@link IntIntCounter}에 저장하므로 (품사, 단어)나 (단어, 문맥) 쌍을 셀 때
+ * 박싱이나 항목 객체 할당이 없다. 열 방향 조회는 모든 행을 훑으므로 열 조회가 잦으면
+ * {@link #transpose()}한 행렬을 쓴다. 스레드 안전하지 않다.
+ */
+public class CooccurrenceMatrix {
+
+	private final StringDictionary rowIds;
+	private final StringDictionary columnIds;
+	private IntIntCounter[] rows = new IntIntCounter[16];
+	private long total = 0;
+
+	public CooccurrenceMatrix() {
+		this(new StringDictionary(), new StringDictionary());
+	}
+
+	/**
+	 * @param rowIds 행 값 사전, 다른 행렬과 ID를 공유하려면 같은 사전을 넘긴다
+	 * @param columnIds 열 값 사전
+	 */
+	public CooccurrenceMatrix(StringDictionary rowIds, StringDictionary columnIds) {
+		this.rowIds = rowIds;
+		this.columnIds = columnIds;
+	}
+
+	public int add(String row, String column) {
+		return add(rowIds.encode(row), columnIds.encode(column), 1);
+	}
+
+	/**
+	 * @return 더한 뒤의 개수
+	 */
+	public int add(int row, int column, int delta) {
+		Validate.isTrue(row >= 0 && column >= 0, "ids must not be negative: (%d, %d)", row, column);
+		total = total + delta;
+		return rowOf(row).add(column, delta);
+	}
+
+	/**
+	 * @return 쌍의 개수, 없으면 0
+	 */
+	public int get(String row, String column) {
+		int rowId = rowIds.codeOf(row);
+		int columnId = columnIds.codeOf(column);
+		if (rowId == StringDictionary.MISSING || columnId == StringDictionary.MISSING) {
+			return 0;
+		}
+		return get(rowId, columnId);
+	}
+
+	public int get(int row, int column) {
+		return row < rows.length && rows[row] != null ? rows[row].get(column) : 0;
+	}
+
+	public StringDictionary getRowIds() {
+		return rowIds;
+	}
+
+	public StringDictionary getColumnIds() {
+		return columnIds;
+	}
+
+	/**
+	 * @return 행의 열 ID와 개수, 열 ID 오름차순. [0] 열 ID, [1] 개수
+	 */
+	public int[][] row(String row) {
+		return row(rowIds.codeOf(row));
+	}
+
+	public int[][] row(int row) {
+		if (row < 0 || row >= rows.length || rows[row] == null) {
+			return new int[2][0];
+		}
+		// (ID, 개수)를 long 하나에 담아 정렬하면 쌍 객체 없이 ID 순서가 된다
+		long[] packed = new long[rows[row].size()];
+		int[] n = { 0 };
+		rows[row].forEach((column, count) -> packed[n[0]++] = (long) column << 32 | (count & 0xFFFFFFFFL));
+		Arrays.sort(packed);
+		int[][] result = new int[2][packed.length];
+		for (int i = 0; i < packed.length; i++) {
+			result[0][i] = (int) (packed[i] >>> 32);
+			result[1][i] = (int) packed[i];
+		}
+		return result;
+	}
+
+	/**
+	 * 모든 행을 훑어 한 열의 값을 모은다.
+	 *
+	 * @return 열의 행 ID와 개수, 행 ID 오름차순. [0] 행 ID, [1] 개수
+	 */
+	public int[][] column(String column) {
+		return column(columnIds.codeOf(column));
+	}
+
+	public int[][] column(int column) {
+		int[] ids = new int[8];
+		int[] counts = new int[8];
+		int n = 0;
+		if (column >= 0) {
+			for (int row = 0; row < rows.length; row++) {
+				int count = rows[row] == null ? 0 : rows[row].get(column);
+				if (count != 0) {
+					if (n == ids.length) {
+						ids = Arrays.copyOf(ids, n * 2);
+						counts = Arrays.copyOf(counts, n * 2);
+					}
+					ids[n] = row;
+					counts[n] = count;
+					n++;
+				}
+			}
+		}
+		return new int[][] { Arrays.copyOf(ids, n), Arrays.copyOf(counts, n) };
+	}
+
+	/**
+	 * @return 행의 개수 합
+	 */
+	public long rowTotal(int row) {
+		return row < rows.length && rows[row] != null ? rows[row].total() : 0L;
+	}
+
+	/**
+	 * @return 모든 쌍의 개수 합
+	 */
+	public long total() {
+		return total;
+	}
+
+	/**
+	 * @return 개수가 있는 (행, 열) 쌍의 수
+	 */
+	public long nonZeros() {
+		long nonZeros = 0;
+		for (IntIntCounter row : rows) {
+			if (row != null) {
+				nonZeros = nonZeros + row.size();
+			}
+		}
+		return nonZeros;
+	}
+
+	public void forEach(CellConsumer consumer) {
+		for (int row = 0; row < rows.length; row++) {
+			if (rows[row] != null) {
+				int rowId = row;
+				rows[row].forEach((column, count) -> consumer.accept(rowId, column, count));
+			}
+		}
+	}
+
+	/**
+	 * other의 개수를 모두 더한다. other의 ID는 이 행렬의 사전으로 다시 매긴다.
+	 */
+	public void merge(CooccurrenceMatrix other) {
+		int[] rowRemap = other.rowIds == rowIds ? null : rowIds.merge(other.rowIds);
+		int[] columnRemap = other.columnIds == columnIds ? null : columnIds.merge(other.columnIds);
+		other.forEach((row, column, count) -> add(rowRemap == null ? row : rowRemap[row],
+				columnRemap == null ? column : columnRemap[column], count));
+	}
+
+	/**
+	 * @return 행과 열을 바꾼 새 행렬, 사전은 공유한다
+	 */
+	public CooccurrenceMatrix transpose() {
+		CooccurrenceMatrix transposed = new CooccurrenceMatrix(columnIds, rowIds);
+		forEach((row, column, count) -> transposed.add(column, row, count));
+		return transposed;
+	}
+
+	/**
+	 * 구간마다 지역 행렬을 만든 뒤 구간 순서대로 합친다. ID는 순차로 셀 때와 같게 처음 나온 순서대로 붙는다.
+	 *
+	 * @param rowOf 항목의 행 값
+	 * @param columnOf 항목의 열 값
+	 * @param threads 스레드 수
+	 */
+	public static <T> CooccurrenceMatrix build(List<T> items, Function<? super T, String> rowOf,
+			Function<? super T, String> columnOf, int threads) {
+		Validate.isTrue(threads > 0, "threads must be positive");
+		int size = items.size();
+		int chunks = Math.max(1, Math.min(threads * 4, size / 10_000));
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+		try {
+			List<Future<CooccurrenceMatrix>> locals = new ArrayList<>(chunks);
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				int from = (int) ((long) size * chunk / chunks);
+				int to = (int) ((long) size * (chunk + 1) / chunks);
+				locals.add(executor.submit(() -> {
+					CooccurrenceMatrix local = new CooccurrenceMatrix();
+					for (int i = from; i < to; i++) {
+						T item = items.get(i);
+						local.add(rowOf.apply(item), columnOf.apply(item));
+					}
+					return local;
+				}));
+			}
+
+			CooccurrenceMatrix result = await(locals.get(0));
+			for (int chunk = 1; chunk < chunks; chunk++) {
+				result.merge(await(locals.get(chunk)));
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int row = 0; row < rows.length; row++) {
+			if (rows[row] == null) {
+				continue;
+			}
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(rowIds.decode(row)).append("={");
+			int[][] cells = row(row);
+			for (int i = 0; i < cells[0].length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(columnIds.decode(cells[0][i])).append('=').append(cells[1][i]);
+			}
+			sb.append('}');
+		}
+		return sb.append('}').toString();
+	}
+
+	private IntIntCounter rowOf(int row) {
+		if (row >= rows.length) {
+			rows = Arrays.copyOf(rows, Math.max(rows.length * 2, row + 1));
+		}
+		if (rows[row] == null) {
+			rows[row] = new IntIntCounter(4);
+		}
+		return rows[row];
+	}
+
+	private static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while counting", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public interface CellConsumer {
+		void accept(int row, int column, int count);
+	}
+}
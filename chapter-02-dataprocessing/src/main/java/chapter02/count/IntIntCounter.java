@@ -0,0 +1,211 @@
+package chapter02.count;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * int 키별 개수를 세는 카운터. 토큰 ID처럼 이미 정수로 바뀐 키를 박싱 없이 센다.
+ * 빈 슬롯은 키 0으로 표시하고, 실제 키 0의 개수는 따로 보관한다. 스레드 안전하지 않다.
+ */
+public class IntIntCounter {
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private int[] keys;
+	private int[] counts;
+	private int size = 0;
+	private long total = 0;
+	private boolean hasZero = false;
+	private int zeroCount = 0;
+
+	public IntIntCounter() {
+		this(16);
+	}
+
+	public IntIntCounter(int expectedKeys) {
+		int capacity = ObjectIntCounter.tableSizeFor((int) Math.ceil(Math.max(expectedKeys, 4) / LOAD_FACTOR));
+		this.keys = new int[capacity];
+		this.counts = new int[capacity];
+	}
+
+	public int add(int key) {
+		return add(key, 1);
+	}
+
+	/**
+	 * @return 더한 뒤의 개수
+	 * @throws ArithmeticException 개수가 int 범위를 넘으면
+	 */
+	public int add(int key, int delta) {
+		total = total + delta;
+		if (key == 0) {
+			if (!hasZero) {
+				hasZero = true;
+				size++;
+			}
+			zeroCount = Math.addExact(zeroCount, delta);
+			return zeroCount;
+		}
+		int slot = slotOf(key);
+		if (keys[slot] == 0) {
+			keys[slot] = key;
+			counts[slot] = delta;
+			size++;
+			if (size > keys.length * LOAD_FACTOR) {
+				rehash(keys.length * 2);
+			}
+			return delta;
+		}
+		counts[slot] = Math.addExact(counts[slot], delta);
+		return counts[slot];
+	}
+
+	/**
+	 * @return 키의 개수, 없으면 0
+	 */
+	public int get(int key) {
+		if (key == 0) {
+			return zeroCount;
+		}
+		int slot = slotOf(key);
+		return keys[slot] == 0 ? 0 : counts[slot];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long total() {
+		return total;
+	}
+
+	public void merge(IntIntCounter other) {
+		other.forEach(this::add);
+	}
+
+	public void forEach(IntIntConsumer consumer) {
+		if (hasZero) {
+			consumer.accept(0, zeroCount);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				consumer.accept(keys[i], counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * 개수가 가장 많은 n개의 키를 개수 내림차순으로 반환한다. 크기 n의 최소 힙만 사용한다.
+	 *
+	 * @return [0] 키, [1] 개수
+	 */
+	public int[][] topN(int n) {
+		Validate.isTrue(n >= 0, "n must not be negative");
+		int limit = Math.min(n, size);
+		int[] heapKeys = new int[limit];
+		int[] heapCounts = new int[limit];
+		int[] heapSize = { 0 };
+		if (limit > 0) {
+			forEach((key, count) -> {
+				if (heapSize[0] < limit) {
+					heapKeys[heapSize[0]] = key;
+					heapCounts[heapSize[0]] = count;
+					siftUp(heapKeys, heapCounts, heapSize[0]++);
+				} else if (count > heapCounts[0]) {
+					heapKeys[0] = key;
+					heapCounts[0] = count;
+					siftDown(heapKeys, heapCounts, limit, 0);
+				}
+			});
+		}
+
+		// 최솟값을 하나씩 꺼내 뒤에서부터 채우면 내림차순이 된다
+		int[][] result = new int[2][limit];
+		for (int i = limit - 1; i >= 0; i--) {
+			result[0][i] = heapKeys[0];
+			result[1][i] = heapCounts[0];
+			swap(heapKeys, heapCounts, 0, i);
+			siftDown(heapKeys, heapCounts, i, 0);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		forEach((key, count) -> {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(key).append('=').append(count);
+		});
+		return sb.append('}').toString();
+	}
+
+	private static void siftUp(int[] keys, int[] counts, int index) {
+		int i = index;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (counts[i] >= counts[parent]) {
+				break;
+			}
+			swap(keys, counts, i, parent);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(int[] keys, int[] counts, int size, int index) {
+		int i = index;
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= size) {
+				break;
+			}
+			int smallest = left + 1 < size && counts[left + 1] < counts[left] ? left + 1 : left;
+			if (counts[i] <= counts[smallest]) {
+				break;
+			}
+			swap(keys, counts, i, smallest);
+			i = smallest;
+		}
+	}
+
+	private static void swap(int[] keys, int[] counts, int a, int b) {
+		int key = keys[a];
+		keys[a] = keys[b];
+		keys[b] = key;
+		int count = counts[a];
+		counts[a] = counts[b];
+		counts[b] = count;
+	}
+
+	private int slotOf(int key) {
+		int mask = keys.length - 1;
+		int slot = ObjectIntCounter.mix(key) & mask;
+		while (keys[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new int[capacity];
+		counts = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = ObjectIntCounter.mix(oldKeys[i]) & mask;
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	public interface IntIntConsumer {
+		void accept(int key, int count);
+	}
+}
@@ -0,0 +1,239 @@
+package chapter02.count;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * 객체별 개수를 세는 카운터. 키와 개수를 각각 Object[], int[]에 두고 선형 탐사로 찾으므로
+ * 증가할 때 박싱이나 항목 객체 할당이 없다. 삭제는 지원하지 않는다. 스레드 안전하지 않으므로
+ * 여러 스레드에서 셀 때는 {@link ConcurrentObjectIntCounter}를 쓴다.
+ */
+public class ObjectIntCounter<K> {
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private Object[] keys;
+	private int[] counts;
+	private int size = 0;
+	private long total = 0;
+
+	public ObjectIntCounter() {
+		this(16);
+	}
+
+	public ObjectIntCounter(int expectedKeys) {
+		int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedKeys, 4) / LOAD_FACTOR));
+		this.keys = new Object[capacity];
+		this.counts = new int[capacity];
+	}
+
+	public int add(K key) {
+		return add(key, 1);
+	}
+
+	/**
+	 * @return 더한 뒤의 개수
+	 * @throws ArithmeticException 개수가 int 범위를 넘으면
+	 */
+	public int add(K key, int delta) {
+		Validate.notNull(key, "key must not be null");
+		int slot = slotOf(key);
+		if (keys[slot] == null) {
+			keys[slot] = key;
+			size++;
+			if (size > keys.length * LOAD_FACTOR) {
+				counts[slot] = delta;
+				total = total + delta;
+				rehash(keys.length * 2);
+				return delta;
+			}
+		}
+		counts[slot] = Math.addExact(counts[slot], delta);
+		total = total + delta;
+		return counts[slot];
+	}
+
+	/**
+	 * @return 키의 개수, 없으면 0
+	 */
+	public int get(K key) {
+		int slot = slotOf(key);
+		return keys[slot] == null ? 0 : counts[slot];
+	}
+
+	/**
+	 * @return 서로 다른 키의 수
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return 모든 개수의 합
+	 */
+	public long total() {
+		return total;
+	}
+
+	/**
+	 * other의 개수를 모두 더한다. 스레드별로 센 카운터를 합칠 때 사용한다.
+	 */
+	@SuppressWarnings("unchecked")
+	public void merge(ObjectIntCounter<K> other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.keys[i] != null) {
+				add((K) other.keys[i], other.counts[i]);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(ObjIntConsumer<K> consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				consumer.accept((K) keys[i], counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * 개수가 가장 많은 n개를 개수 내림차순으로 반환한다. 전체를 복사하거나 정렬하지 않고
+	 * 크기 n의 최소 힙에 슬롯 번호만 유지한다.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Entry<K>> topN(int n) {
+		Validate.isTrue(n >= 0, "n must not be negative");
+		int[] heap = new int[Math.min(n, size)];
+		int heapSize = 0;
+		for (int i = 0; i < keys.length && heap.length > 0; i++) {
+			if (keys[i] == null) {
+				continue;
+			}
+			if (heapSize < heap.length) {
+				heap[heapSize++] = i;
+				siftUp(heap, heapSize - 1);
+			} else if (counts[i] > counts[heap[0]]) {
+				heap[0] = i;
+				siftDown(heap, heapSize, 0);
+			}
+		}
+		List<Entry<K>> result = new ArrayList<>(heapSize);
+		for (int i = 0; i < heapSize; i++) {
+			result.add(new Entry<>((K) keys[heap[i]], counts[heap[i]]));
+		}
+		Collections.sort(result, (a, b) -> Integer.compare(b.count, a.count));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		forEach((key, count) -> {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(key).append('=').append(count);
+		});
+		return sb.append('}').toString();
+	}
+
+	private void siftUp(int[] heap, int index) {
+		int i = index;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (counts[heap[i]] >= counts[heap[parent]]) {
+				break;
+			}
+			swap(heap, i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int[] heap, int heapSize, int index) {
+		int i = index;
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= heapSize) {
+				break;
+			}
+			int smallest = left + 1 < heapSize && counts[heap[left + 1]] < counts[heap[left]] ? left + 1 : left;
+			if (counts[heap[i]] <= counts[heap[smallest]]) {
+				break;
+			}
+			swap(heap, i, smallest);
+			i = smallest;
+		}
+	}
+
+	private static void swap(int[] heap, int a, int b) {
+		int tmp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = tmp;
+	}
+
+	private int slotOf(Object key) {
+		int mask = keys.length - 1;
+		int slot = mix(key.hashCode()) & mask;
+		while (keys[slot] != null && !keys[slot].equals(key)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new Object[capacity];
+		counts = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = mix(oldKeys[i].hashCode()) & mask;
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	static int tableSizeFor(int n) {
+		int capacity = Integer.highestOneBit(Math.max(n, 2) - 1) << 1;
+		Validate.isTrue(capacity > 0, "too many keys: %d", n);
+		return capacity;
+	}
+
+	public static class Entry<K> {
+
+		private final K key;
+		private final int count;
+
+		public Entry(K key, int count) {
+			this.key = key;
+			this.count = count;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			return key + " x " + count;
+		}
+	}
+}
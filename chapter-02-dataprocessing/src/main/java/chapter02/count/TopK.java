@@ -0,0 +1,276 @@
+package chapter02.count;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * 입력을 한 번만 훑으면서 순서상 가장 큰 k개만 크기 k의 최소 힙에 유지한다. 메모리는 입력 크기와
+ * 상관없이 O(k)이므로 메모리에 들어가지 않는 파일에도 쓸 수 있다.
+ * <p>
+ * holders와 copier를 주면 힙이 자기 holder 객체를 k개까지 만들어 두고, 들어오는 항목은 힙에 들어갈
+ * 때만 그 holder에 복사한다. 줄을 읽을 때도 스레드마다 holder 하나를 재사용하므로 힙에 들어가지 않는
+ * 줄은 객체를 만들지 않는다. 같은 순위끼리의 순서는 정하지 않는다. 스레드 안전하지 않다.
+ */
+public class TopK<T> {
+
+	private static final int LINE_BATCH = 4096;
+
+	private final int k;
+	private final Comparator<? super T> order;
+	private final Supplier<T> holders;
+	private final BiConsumer<? super T, ? super T> copier;
+	private final Object[] heap;
+	private int size = 0;
+
+	private TopK(int k, Comparator<? super T> order, Supplier<T> holders, BiConsumer<? super T, ? super T> copier) {
+		Validate.isTrue(k >= 0, "k must not be negative");
+		Validate.notNull(order, "order must not be null");
+		this.k = k;
+		this.order = order;
+		this.holders = holders;
+		this.copier = copier;
+		this.heap = new Object[k];
+	}
+
+	/**
+	 * 항목의 참조를 그대로 보관한다. 변하지 않는 항목에 사용한다.
+	 */
+	public static <T> TopK<T> greatest(int k, Comparator<? super T> order) {
+		return new TopK<>(k, order, null, null);
+	}
+
+	/**
+	 * @param holders 힙이 보관할 holder를 만든다
+	 * @param copier (원본, 대상) 원본 항목의 값을 holder에 복사한다
+	 */
+	public static <T> TopK<T> greatest(int k, Comparator<? super T> order, Supplier<T> holders,
+			BiConsumer<? super T, ? super T> copier) {
+		Validate.notNull(holders, "holders must not be null");
+		Validate.notNull(copier, "copier must not be null");
+		return new TopK<>(k, order, holders, copier);
+	}
+
+	/**
+	 * Ordering.leastOf와 같이 순서상 가장 작은 k개를 유지한다.
+	 */
+	public static <T> TopK<T> least(int k, Comparator<T> order) {
+		return greatest(k, order.reversed());
+	}
+
+	public static <T> TopK<T> least(int k, Comparator<T> order, Supplier<T> holders,
+			BiConsumer<? super T, ? super T> copier) {
+		return greatest(k, order.reversed(), holders, copier);
+	}
+
+	/**
+	 * 병렬 스트림에도 쓸 수 있는 수집기. 부분 결과는 {@link #merge(TopK)}로 합친다.
+	 *
+	 * @return 가장 큰 k개, 내림차순
+	 */
+	public static <T> Collector<T, ?, List<T>> toGreatest(int k, Comparator<? super T> order) {
+		return Collector.of(() -> TopK.<T> greatest(k, order), TopK::offer, (a, b) -> {
+			a.merge(b);
+			return a;
+		}, TopK::toList);
+	}
+
+	/**
+	 * @return 가장 작은 k개, 오름차순
+	 */
+	public static <T> Collector<T, ?, List<T>> toLeast(int k, Comparator<T> order) {
+		return toGreatest(k, order.reversed());
+	}
+
+	/**
+	 * @return 항목이 힙에 들어갔으면 true. false면 항목을 참조하지 않으므로 호출한 쪽이 재사용해도 된다
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean offer(T item) {
+		if (size < k) {
+			T slot = item;
+			if (holders != null) {
+				slot = holders.get();
+				copier.accept(item, slot);
+			}
+			heap[size++] = slot;
+			siftUp(size - 1);
+			return true;
+		}
+		if (k == 0 || order.compare(item, (T) heap[0]) <= 0) {
+			return false;
+		}
+		if (holders != null) {
+			copier.accept(item, (T) heap[0]);
+		} else {
+			heap[0] = item;
+		}
+		siftDown(0);
+		return true;
+	}
+
+	/**
+	 * 줄마다 스레드의 holder 하나에 파싱한 뒤 {@link #offer(Object)}한다.
+	 *
+	 * @param parser (줄, holder) 줄의 값을 holder에 채운다
+	 */
+	public TopK<T> offerLines(Iterator<String> lines, BiConsumer<String, ? super T> parser) {
+		Validate.validState(holders != null, "reading lines requires holders");
+		T scratch = holders.get();
+		while (lines.hasNext()) {
+			parser.accept(lines.next(), scratch);
+			offer(scratch);
+		}
+		return this;
+	}
+
+	/**
+	 * 줄을 묶음으로 나눠 스레드마다 부분 top-k를 구한 뒤 이 힙에 합친다. 읽는 쪽은 호출한 스레드이고,
+	 * 처리 중인 묶음은 threads * 2개로 제한되므로 메모리는 입력 크기와 상관없다.
+	 *
+	 * @param threads 파싱과 비교를 맡을 스레드 수
+	 */
+	public TopK<T> offerLinesParallel(Iterator<String> lines, BiConsumer<String, ? super T> parser, int threads) {
+		Validate.validState(holders != null, "reading lines requires holders");
+		Validate.isTrue(threads > 0, "threads must be positive");
+
+		Queue<TopK<T>> partials = new ConcurrentLinkedQueue<>();
+		ThreadLocal<TopK<T>> local = ThreadLocal.withInitial(() -> {
+			TopK<T> partial = new TopK<>(k, order, holders, copier);
+			partials.add(partial);
+			return partial;
+		});
+		ThreadLocal<T> scratch = ThreadLocal.withInitial(holders);
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		Semaphore inFlight = new Semaphore(threads * 2);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			while (lines.hasNext() && failure.get() == null) {
+				String[] batch = new String[LINE_BATCH];
+				int n = 0;
+				while (n < batch.length && lines.hasNext()) {
+					batch[n++] = lines.next();
+				}
+				int count = n;
+				inFlight.acquire();
+				executor.execute(() -> {
+					try {
+						TopK<T> partial = local.get();
+						T holder = scratch.get();
+						for (int i = 0; i < count; i++) {
+							parser.accept(batch[i], holder);
+							partial.offer(holder);
+						}
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// 남은 묶음이 끝날 때까지 기다린다
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while reading lines", e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		for (TopK<T> partial : partials) {
+			merge(partial);
+		}
+		return this;
+	}
+
+	/**
+	 * other가 보관한 항목을 모두 이 힙에 넣는다. 부분 top-k를 합칠 때 사용한다.
+	 */
+	@SuppressWarnings("unchecked")
+	public void merge(TopK<T> other) {
+		for (int i = 0; i < other.size; i++) {
+			offer((T) other.heap[i]);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return 보관한 항목, 순서상 큰 것부터. holder를 쓰는 경우 이후 offer로 값이 바뀔 수 있다
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> toList() {
+		List<T> result = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			result.add((T) heap[i]);
+		}
+		Collections.sort(result, Collections.reverseOrder(order));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return toList().toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(int a, int b) {
+		return order.compare((T) heap[a], (T) heap[b]);
+	}
+
+	private void siftUp(int index) {
+		int i = index;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (compare(i, parent) >= 0) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		int i = index;
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= size) {
+				break;
+			}
+			int smallest = left + 1 < size && compare(left + 1, left) < 0 ? left + 1 : left;
+			if (compare(i, smallest) <= 0) {
+				break;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		Object tmp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = tmp;
+	}
+}
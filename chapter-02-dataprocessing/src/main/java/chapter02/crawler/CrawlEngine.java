@@ -0,0 +1,249 @@
+package chapter02.crawler;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CrawlEngine implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CrawlEngine.class);
+
+	private final Fetcher fetcher;
+	private final int maxInFlight;
+	private final long timeoutMillis;
+	private final Semaphore permits;
+	private final ExecutorService executor;
+	private final ScheduledExecutorService timer;
+	private final Set<Request> pending = ConcurrentHashMap.newKeySet();
+	private final LongAdder timeouts = new LongAdder();
+	private volatile boolean cancelled = false;
+
+	public CrawlEngine(int maxInFlight, long timeout, TimeUnit unit) {
+		this(maxInFlight, timeout, unit, new FetchClient()::fetch);
+	}
+
+	public CrawlEngine(int maxInFlight, long timeout, TimeUnit unit, Fetcher fetcher) {
+		Validate.isTrue(maxInFlight > 0, "maxInFlight must be positive");
+		this.fetcher = fetcher;
+		this.maxInFlight = maxInFlight;
+		this.timeoutMillis = unit.toMillis(timeout);
+		this.permits = new Semaphore(maxInFlight);
+		this.executor = Executors.newFixedThreadPool(maxInFlight, daemonThreads("crawl-"));
+		this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("crawl-timer-"));
+	}
+
+	/**
+	 * URL 하나를 비동기로 크롤링한다. 동시 요청 수가 maxInFlight에 도달하면
+	 * 빈 자리가 생길 때까지 호출 스레드를 막는다. sink는 작업 스레드에서 실행되므로
+	 * 저장소가 느려지면 그만큼 새 요청이 늦게 들어가게 된다(backpressure).
+	 * 제한 시간은 작업 스레드가 요청(fetch)을 시작한 때부터 재고, sink가 시작된 뒤에는
+	 * 타임아웃이나 취소로 중단되지 않는다. 타임아웃이 나면 future는 바로 끝나지만, 허가는
+	 * 작업 스레드가 실제로 빠져나올 때 반환되므로 응답하지 않는 소켓 읽기에 묶인 스레드도
+	 * 동시 요청 수에 포함된다.
+	 *
+	 * @param url 크롤링할 URL
+	 * @param sink 받아온 결과를 처리할 함수 (예: MapDB 저장). 304 응답도 그대로 전달된다
+	 * @return 타임아웃, 오류, 취소 시에는 빈 Optional을 담은 future
+	 */
+	public CompletableFuture<Optional<FetchResult>> submit(String url, BiConsumer<String, FetchResult> sink) {
+		CompletableFuture<Optional<FetchResult>> result = new CompletableFuture<>();
+		if (cancelled || !acquire()) {
+			result.complete(Optional.empty());
+			return result;
+		}
+
+		// 허가는 작업 스레드가 빠져나올 때, 또는 시작 전에 취소되면 abort가 정확히 한 번 반환한다
+		Request request = new Request(result);
+		result.whenComplete((fetched, e) -> pending.remove(request));
+		pending.add(request);
+		try {
+			request.task = executor.submit(() -> run(url, sink, request));
+		} catch (RejectedExecutionException e) {
+			abort(request);
+		}
+		return result;
+	}
+
+	private void run(String url, BiConsumer<String, FetchResult> sink, Request request) {
+		if (!request.start()) {
+			return;
+		}
+		ScheduledFuture<?> deadline = timer.schedule(() -> {
+			if (abort(request)) {
+				timeouts.increment();
+				LOGGER.warn("timeout exception: could not crawl {} in {} ms", url, timeoutMillis);
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		try {
+			fetchAndSink(url, sink, request);
+		} finally {
+			deadline.cancel(false);
+			permits.release();
+		}
+	}
+
+	private void fetchAndSink(String url, BiConsumer<String, FetchResult> sink, Request request) {
+		FetchResult fetched;
+		try {
+			fetched = fetcher.fetch(url);
+			if (!fetched.isSuccessful() && !fetched.isNotModified()) {
+				throw new IOException("server returned HTTP " + fetched.getStatus());
+			}
+		} catch (Exception e) {
+			if (request.state.compareAndSet(Request.FETCHING, Request.DONE)) {
+				LOGGER.warn("could not crawl {}: {}", url, e.toString());
+				request.result.complete(Optional.empty());
+			}
+			return;
+		}
+
+		// 타이머보다 먼저 요청을 끝낸 경우에만 sink를 실행한다. 이후로는 인터럽트되지 않는다
+		if (!request.state.compareAndSet(Request.FETCHING, Request.SINKING)) {
+			return;
+		}
+		try {
+			sink.accept(url, fetched);
+			request.result.complete(Optional.of(fetched));
+		} catch (RuntimeException e) {
+			LOGGER.warn("could not store {}: {}", url, e.toString());
+			request.result.complete(Optional.empty());
+		}
+	}
+
+	/**
+	 * 아직 요청 중이면 빈 결과로 끝낸다. 작업이 시작되지 않았으면 허가를 여기서 반환하고,
+	 * 실행 중이면 작업 스레드를 인터럽트한다(허가는 그 스레드가 빠져나올 때 반환된다).
+	 *
+	 * @return 이 호출로 요청을 끝냈으면 true
+	 */
+	private boolean abort(Request request) {
+		if (!request.state.compareAndSet(Request.FETCHING, Request.DONE)) {
+			return false;
+		}
+		request.result.complete(Optional.empty());
+		Future<?> task = request.task;
+		if (request.start()) {
+			permits.release();
+			if (task != null) {
+				task.cancel(false);
+			}
+		} else if (task != null) {
+			task.cancel(true);
+		}
+		return true;
+	}
+
+	/**
+	 * 진행 중인 모든 요청이 끝날 때까지 최대 timeout 동안 기다린다.
+	 *
+	 * @return 제한 시간 안에 모두 끝났으면 true
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		if (permits.tryAcquire(maxInFlight, timeout, unit)) {
+			permits.release(maxInFlight);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 진행 중인 요청을 모두 취소하고 이후 들어오는 요청은 바로 빈 결과로 끝낸다.
+	 * 이미 sink를 실행 중인 요청은 끝까지 실행된다.
+	 */
+	public void cancel() {
+		cancelled = true;
+		for (Request request : pending) {
+			abort(request);
+		}
+		executor.shutdown();
+	}
+
+	public int inFlight() {
+		return maxInFlight - permits.availablePermits();
+	}
+
+	/**
+	 * @return 엔진의 제한 시간을 넘겨 취소된 요청 수
+	 */
+	public long timeouts() {
+		return timeouts.sum();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				cancel();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel();
+		}
+		timer.shutdownNow();
+	}
+
+	private boolean acquire() {
+		try {
+			permits.acquire();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static class Request {
+		private static final int FETCHING = 0;
+		private static final int SINKING = 1;
+		private static final int DONE = 2;
+
+		private final CompletableFuture<Optional<FetchResult>> result;
+		private final AtomicInteger state = new AtomicInteger(FETCHING);
+		private final AtomicBoolean started = new AtomicBoolean(false);
+		private volatile Future<?> task;
+
+		Request(CompletableFuture<Optional<FetchResult>> result) {
+			this.result = result;
+		}
+
+		/**
+		 * 작업 스레드와 abort 중 먼저 부른 쪽만 true를 받는다. true를 받은 쪽이 허가를 반환한다.
+		 */
+		boolean start() {
+			return started.compareAndSet(false, true);
+		}
+	}
+
+	public interface Fetcher {
+		FetchResult fetch(String url) throws IOException;
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -0,0 +1,342 @@
+package chapter02.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * URL별 크롤링 상태를 MapDB에 저장하는 프런티어. 주기적으로 커밋(체크포인트)하므로
+ * 크롤러가 중간에 죽더라도 다시 시작하면 끝나지 않은 URL만 가져온다. 대기 중인 URL 목록도
+ * 디스크에 있고 중복 검사는 블룸 필터를 먼저 거치므로 URL 수가 늘어도 메모리 사용량은 거의 일정하다.
+ */
+public class CrawlFrontier implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CrawlFrontier.class);
+
+	public enum Status {
+		PENDING, IN_FLIGHT, DONE, FAILED
+	}
+
+	private final DB db;
+	private final HTreeMap<String, Entry> entries;
+	private final BTreeMap<Long, String> ready;
+	private final UrlDeduplicator seen;
+	private final int maxRetries;
+	private final long retryBackoffMillis;
+	private final int checkpointInterval;
+
+	private final PriorityQueue<Retry> retries = new PriorityQueue<>(Comparator.comparingLong(r -> r.dueMillis));
+	private long nextSequence = 0;
+	private int inFlight = 0;
+	private int changesSinceCheckpoint = 0;
+	private Runnable beforeCheckpoint = () -> {};
+
+	public CrawlFrontier(String file) {
+		this(file, 3, TimeUnit.SECONDS.toMillis(30), 500);
+	}
+
+	/**
+	 * 파일을 열면서 이전 실행에서 IN_FLIGHT로 남은 URL은 다시 PENDING으로 돌린다.
+	 *
+	 * @param file MapDB 파일 경로
+	 * @param maxRetries 실패한 URL을 다시 시도하는 최대 횟수
+	 * @param retryBackoffMillis 첫 재시도까지의 대기 시간, 재시도할 때마다 두 배가 된다
+	 * @param checkpointInterval 이 횟수만큼 상태가 바뀌면 커밋
+	 */
+	public CrawlFrontier(String file, int maxRetries, long retryBackoffMillis, int checkpointInterval) {
+		this(file, maxRetries, retryBackoffMillis, checkpointInterval,
+				new UrlDeduplicator(10_000_000, 0.01));
+	}
+
+	/**
+	 * @param seen 디스크 조회 전에 확인하는 블룸 필터. 오탐률이 낮을수록 디스크 조회가 줄어든다
+	 */
+	public CrawlFrontier(String file, int maxRetries, long retryBackoffMillis, int checkpointInterval,
+			UrlDeduplicator seen) {
+		Validate.isTrue(checkpointInterval > 0, "checkpointInterval must be positive");
+		this.db = DBMaker.fileDB(file).transactionEnable().closeOnJvmShutdown().make();
+		this.entries = db.hashMap("frontier", Serializer.STRING, new EntrySerializer()).createOrOpen();
+		this.ready = db.treeMap("ready", Serializer.LONG, Serializer.STRING).createOrOpen();
+		this.seen = seen;
+		this.maxRetries = maxRetries;
+		this.retryBackoffMillis = retryBackoffMillis;
+		this.checkpointInterval = checkpointInterval;
+		recover();
+	}
+
+	private void recover() {
+		if (!ready.isEmpty()) {
+			nextSequence = ready.lastKey() + 1;
+		}
+		int resumed = ready.size();
+		for (String url : entries.getKeys()) {
+			seen.firstSeen(url);
+			Entry entry = entries.get(url);
+			if (entry.status == Status.IN_FLIGHT) {
+				entries.put(url, entry.with(Status.PENDING));
+				enqueue(url);
+				resumed++;
+			} else if (entry.status == Status.FAILED && entry.retries <= maxRetries) {
+				retries.add(new Retry(url, entry.nextAttemptMillis));
+				resumed++;
+			}
+		}
+		db.commit();
+		LOGGER.info("frontier opened with {} urls, {} outstanding", entries.size(), resumed);
+	}
+
+	/**
+	 * 처음 보는 URL이면 PENDING 상태로 추가한다.
+	 *
+	 * @return 새로 추가되었으면 true
+	 */
+	public synchronized boolean add(String url) {
+		Entry pending = new Entry(Status.PENDING, 0, 0L, null);
+		if (seen.firstSeen(url)) {
+			// 블룸 필터가 처음 본다고 하면 확실히 새 URL이므로 디스크를 조회하지 않는다
+			entries.put(url, pending);
+		} else if (entries.putIfAbsent(url, pending) != null) {
+			return false;
+		}
+		enqueue(url);
+		changed();
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * 가져올 수 있는 URL 하나를 IN_FLIGHT로 바꿔 반환한다. 재시도 대기 중인 URL만 남았다면
+	 * 최대 timeout 동안 기다린다.
+	 *
+	 * @return 가져올 URL, 제한 시간 안에 준비된 URL이 없거나 남은 작업이 없으면 null
+	 */
+	public synchronized String take(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+		while (true) {
+			long now = System.currentTimeMillis();
+			while (!retries.isEmpty() && retries.peek().dueMillis <= now) {
+				enqueue(retries.poll().url);
+			}
+
+			Map.Entry<Long, String> next = ready.pollFirstEntry();
+			if (next != null) {
+				String url = next.getValue();
+				Entry entry = entries.get(url);
+				if (entry.status == Status.IN_FLIGHT || entry.status == Status.DONE) {
+					// 재시도 대기열과 디스크 대기열에 중복으로 들어간 경우
+					continue;
+				}
+				entries.put(url, entry.with(Status.IN_FLIGHT));
+				inFlight++;
+				changed();
+				return url;
+			}
+
+			if (isExhausted() || now >= deadline) {
+				return null;
+			}
+			long wait = deadline - now;
+			if (!retries.isEmpty()) {
+				wait = Math.min(wait, retries.peek().dueMillis - now);
+			}
+			wait(Math.max(1, wait));
+		}
+	}
+
+	public synchronized void markDone(String url) {
+		Entry entry = entries.get(url);
+		entries.put(url, new Entry(Status.DONE, entry.retries, 0L, null));
+		finished();
+	}
+
+	public synchronized void markFailed(String url, String error) {
+		Entry entry = entries.get(url);
+		int attempt = entry.retries + 1;
+		long backoff = retryBackoffMillis << Math.min(attempt - 1, 20);
+		long nextAttempt = System.currentTimeMillis() + backoff;
+		entries.put(url, new Entry(Status.FAILED, attempt, nextAttempt, error));
+		if (attempt <= maxRetries) {
+			retries.add(new Retry(url, nextAttempt));
+		} else {
+			LOGGER.warn("giving up on {} after {} attempts: {}", url, attempt, error);
+		}
+		finished();
+	}
+
+	/**
+	 * 완료된 URL을 다시 PENDING으로 돌린다. 주기적인 재크롤링에 사용한다.
+	 *
+	 * @return 다시 대기열에 넣은 URL 수
+	 */
+	public synchronized int requeueDone() {
+		int requeued = 0;
+		for (String url : entries.getKeys()) {
+			Entry entry = entries.get(url);
+			if (entry.status == Status.DONE) {
+				entries.put(url, new Entry(Status.PENDING, 0, 0L, null));
+				enqueue(url);
+				requeued++;
+			}
+		}
+		checkpoint();
+		notifyAll();
+		return requeued;
+	}
+
+	/**
+	 * @return 대기, 진행, 재시도 예정인 URL이 하나도 없으면 true
+	 */
+	public synchronized boolean isExhausted() {
+		return ready.isEmpty() && retries.isEmpty() && inFlight == 0;
+	}
+
+	public synchronized Map<Status, Integer> counts() {
+		Map<Status, Integer> counts = new EnumMap<>(Status.class);
+		for (Status status : Status.values()) {
+			counts.put(status, 0);
+		}
+		for (Entry entry : entries.getValues()) {
+			counts.merge(entry.status, 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	public Entry get(String url) {
+		return entries.get(url);
+	}
+
+	/**
+	 * 체크포인트마다 프런티어를 커밋하기 직전에 실행할 작업을 등록한다. 페이지 저장소를 여기서
+	 * 커밋하면 커밋된 프런티어에서 DONE인 URL의 페이지는 항상 저장소에도 커밋되어 있다.
+	 */
+	public synchronized void beforeCheckpoint(Runnable action) {
+		Validate.notNull(action, "action must not be null");
+		this.beforeCheckpoint = action;
+	}
+
+	public synchronized void checkpoint() {
+		changesSinceCheckpoint = 0;
+		beforeCheckpoint.run();
+		db.commit();
+	}
+
+	@Override
+	public synchronized void close() {
+		checkpoint();
+		db.close();
+	}
+
+	private void enqueue(String url) {
+		ready.put(nextSequence++, url);
+	}
+
+	private void finished() {
+		inFlight--;
+		changed();
+		notifyAll();
+	}
+
+	private void changed() {
+		changesSinceCheckpoint++;
+		if (changesSinceCheckpoint >= checkpointInterval) {
+			checkpoint();
+		}
+	}
+
+	public static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Status status;
+		private final int retries;
+		private final long nextAttemptMillis;
+		private final String lastError;
+
+		public Entry(Status status, int retries, long nextAttemptMillis, String lastError) {
+			this.status = status;
+			this.retries = retries;
+			this.nextAttemptMillis = nextAttemptMillis;
+			this.lastError = lastError;
+		}
+
+		Entry with(Status newStatus) {
+			return new Entry(newStatus, retries, nextAttemptMillis, lastError);
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public int getRetries() {
+			return retries;
+		}
+
+		public long getNextAttemptMillis() {
+			return nextAttemptMillis;
+		}
+
+		public String getLastError() {
+			return lastError;
+		}
+
+		@Override
+		public String toString() {
+			return "Entry [status=" + status + ", retries=" + retries + ", nextAttemptMillis=" + nextAttemptMillis
+					+ ", lastError=" + lastError + "]";
+		}
+	}
+
+	/**
+	 * Entry를 (상태, 재시도 횟수, 다음 시도 시각, 마지막 오류) 순서로 저장한다.
+	 */
+	private static class EntrySerializer implements Serializer<Entry> {
+
+		private static final Status[] STATUSES = Status.values();
+
+		@Override
+		public void serialize(DataOutput2 out, Entry value) throws IOException {
+			out.writeByte(value.status.ordinal());
+			out.packInt(value.retries);
+			out.writeLong(value.nextAttemptMillis);
+			out.writeBoolean(value.lastError != null);
+			if (value.lastError != null) {
+				out.writeUTF(value.lastError);
+			}
+		}
+
+		@Override
+		public Entry deserialize(DataInput2 in, int available) throws IOException {
+			Status status = STATUSES[in.readByte()];
+			int retries = in.unpackInt();
+			long nextAttemptMillis = in.readLong();
+			String lastError = in.readBoolean() ? in.readUTF() : null;
+			return new Entry(status, retries, nextAttemptMillis, lastError);
+		}
+	}
+
+	private static class Retry {
+		private final String url;
+		private final long dueMillis;
+
+		Retry(String url, long dueMillis) {
+			this.url = url;
+			this.dueMillis = dueMillis;
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package chapter02.crawler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import chapter02.metrics.LatencyHistogram;
+
+/**
+ * 크롤러 지표 모음. 요청 지연 시간, 전송 바이트와 압축 절감량, 오류 유형, 파이프라인 대기열 길이,
+ * 저장소 쓰기 지연을 기록한다. JMX로 노출하고 주기적으로 파일에 남길 수 있어 느린 크롤링이
+ * 네트워크, 파싱, 저장 중 어디에서 막히는지 구분할 수 있다.
+ * <p>
+ * 지연 시간 히스토그램은 전체에 대해서만 둔다. 호스트별로는 요청 수와 오류 수만 세고, 그것도
+ * 요청이 많은 호스트 trackedHosts개까지만 보관한다(Space-Saving). 자리가 없으면 가장 적게 센 호스트를
+ * 내보내고 새 호스트가 그 수를 이어받으므로, 호스트가 수만 개여도 메모리와 보고서 크기가 일정하다.
+ * 이어받은 수 때문에 상위 호스트의 요청 수는 실제보다 최대 그만큼 많을 수 있다.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CrawlMetrics.class);
+
+	private final int trackedHosts;
+	private final int reportedHosts;
+	private final Map<String, HostCounts> hosts = new HashMap<>();
+	private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+	private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+	private final LatencyHistogram fetchLatency = new LatencyHistogram();
+	private final LatencyHistogram storeWriteLatency = new LatencyHistogram();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder bytesTransferred = new LongAdder();
+	private final LongAdder bytesDecoded = new LongAdder();
+	private ScheduledExecutorService reporter;
+
+	public CrawlMetrics() {
+		this(1024, 20);
+	}
+
+	/**
+	 * @param trackedHosts 요청 수를 세는 최대 호스트 수
+	 * @param reportedHosts 스냅샷과 JMX에 내보낼 상위 호스트 수
+	 */
+	public CrawlMetrics(int trackedHosts, int reportedHosts) {
+		Validate.isTrue(trackedHosts > 0, "trackedHosts must be positive");
+		Validate.isTrue(reportedHosts >= 0 && reportedHosts <= trackedHosts,
+				"reportedHosts must be between 0 and trackedHosts");
+		this.trackedHosts = trackedHosts;
+		this.reportedHosts = reportedHosts;
+	}
+
+	public void recordFetch(String url, FetchResult result, long nanos) {
+		requests.increment();
+		fetchLatency.record(nanos, TimeUnit.NANOSECONDS);
+		bytesTransferred.add(result.getTransferredBytes());
+		bytesDecoded.add(result.getDecodedBytes());
+
+		int status = result.getStatus();
+		String error = null;
+		if (status >= 500) {
+			error = "http_5xx";
+		} else if (status >= 400) {
+			error = "http_4xx";
+		}
+		recordHost(url, error);
+	}
+
+	public void recordFailure(String url, Throwable e, long nanos) {
+		requests.increment();
+		fetchLatency.record(nanos, TimeUnit.NANOSECONDS);
+		recordHost(url, errorType(e));
+	}
+
+	public void recordStoreWrite(long nanos) {
+		storeWriteLatency.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 대기열 길이처럼 읽을 때마다 계산되는 값을 등록한다.
+	 */
+	public void registerGauge(String name, LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	@Override
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	@Override
+	public long getBytesTransferred() {
+		return bytesTransferred.sum();
+	}
+
+	@Override
+	public long getBytesDecoded() {
+		return bytesDecoded.sum();
+	}
+
+	/**
+	 * @return 압축 전송으로 아낀 비율 (0이면 절감 없음)
+	 */
+	@Override
+	public double getCompressionSavings() {
+		long decoded = bytesDecoded.sum();
+		return decoded == 0 ? 0.0 : 1.0 - (double) bytesTransferred.sum() / decoded;
+	}
+
+	@Override
+	public long getFetchLatencyP50Micros() {
+		return fetchLatency.percentileMicros(50);
+	}
+
+	@Override
+	public long getFetchLatencyP99Micros() {
+		return fetchLatency.percentileMicros(99);
+	}
+
+	@Override
+	public long getStoreWriteLatencyP50Micros() {
+		return storeWriteLatency.percentileMicros(50);
+	}
+
+	@Override
+	public long getStoreWriteLatencyP99Micros() {
+		return storeWriteLatency.percentileMicros(99);
+	}
+
+	/**
+	 * @return 요청이 많은 상위 reportedHosts개 호스트의 요청 수, 많은 순서
+	 */
+	@Override
+	public Map<String, Long> getRequestsByHost() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Map.Entry<String, HostCounts> e : topHosts()) {
+			result.put(e.getKey(), e.getValue().requests);
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getErrorsByType() {
+		Map<String, Long> result = new TreeMap<>();
+		errors.forEach((type, count) -> result.put(type, count.sum()));
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getGauges() {
+		Map<String, Long> result = new TreeMap<>();
+		gauges.forEach((name, gauge) -> result.put(name, gauge.getAsLong()));
+		return result;
+	}
+
+	/**
+	 * 모든 지표를 "그룹.이름" 형태의 평평한 맵으로 만든다.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new TreeMap<>();
+		snapshot.put("requests", getRequests());
+		snapshot.put("bytes.transferred", getBytesTransferred());
+		snapshot.put("bytes.decoded", getBytesDecoded());
+		snapshot.put("bytes.compression_savings", getCompressionSavings());
+		snapshot.put("fetch.p50_us", getFetchLatencyP50Micros());
+		snapshot.put("fetch.p99_us", getFetchLatencyP99Micros());
+		snapshot.put("store.write.p50_us", getStoreWriteLatencyP50Micros());
+		snapshot.put("store.write.p99_us", getStoreWriteLatencyP99Micros());
+		snapshot.put("store.write.count", storeWriteLatency.getCount());
+		getErrorsByType().forEach((type, count) -> snapshot.put("errors." + type, count));
+		getGauges().forEach((name, value) -> snapshot.put("gauge." + name, value));
+		for (Map.Entry<String, HostCounts> e : topHosts()) {
+			snapshot.put("host." + e.getKey() + ".requests", e.getValue().requests);
+			snapshot.put("host." + e.getKey() + ".errors", e.getValue().errors);
+		}
+		return snapshot;
+	}
+
+	public void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("chapter02.crawler:type=CrawlMetrics");
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			LOGGER.warn("could not register crawl metrics with JMX", e);
+		}
+	}
+
+	/**
+	 * 주기적으로 스냅샷을 파일 끝에 덧붙인다. 확장자가 .csv이면 (timestamp,metric,value) 행으로,
+	 * 아니면 한 줄에 하나의 JSON 객체로 기록한다.
+	 */
+	public synchronized void startReporting(Path path, long period, TimeUnit unit) {
+		stopReporting();
+		boolean csv = path.toString().endsWith(".csv");
+		reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "crawl-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(() -> report(path, csv), period, period, unit);
+	}
+
+	public synchronized void stopReporting() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+			reporter = null;
+		}
+	}
+
+	public void report(Path path, boolean csv) {
+		long timestamp = System.currentTimeMillis();
+		Map<String, Object> snapshot = snapshot();
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			if (csv) {
+				for (Map.Entry<String, Object> e : snapshot.entrySet()) {
+					writer.write(timestamp + "," + e.getKey() + "," + e.getValue());
+					writer.newLine();
+				}
+			} else {
+				snapshot.put("timestamp", timestamp);
+				writer.write(JSON.std.asString(snapshot));
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("could not write crawl metrics to {}", path, e);
+		}
+	}
+
+	/**
+	 * @param error 오류 유형, 성공했으면 null
+	 */
+	private void recordHost(String url, String error) {
+		if (error != null) {
+			errors.computeIfAbsent(error, t -> new LongAdder()).increment();
+		}
+		String host = HostScheduler.hostOf(url);
+		synchronized (hosts) {
+			HostCounts counts = hosts.get(host);
+			if (counts == null) {
+				counts = new HostCounts();
+				if (hosts.size() >= trackedHosts) {
+					// 가장 적게 센 호스트를 내보내고 그 수를 이어받는다
+					Map.Entry<String, HostCounts> least = null;
+					for (Map.Entry<String, HostCounts> e : hosts.entrySet()) {
+						if (least == null || e.getValue().requests < least.getValue().requests) {
+							least = e;
+						}
+					}
+					hosts.remove(least.getKey());
+					counts.requests = least.getValue().requests;
+				}
+				hosts.put(host, counts);
+			}
+			counts.requests++;
+			if (error != null) {
+				counts.errors++;
+			}
+		}
+	}
+
+	private List<Map.Entry<String, HostCounts>> topHosts() {
+		List<Map.Entry<String, HostCounts>> top = new ArrayList<>();
+		synchronized (hosts) {
+			for (Map.Entry<String, HostCounts> e : hosts.entrySet()) {
+				HostCounts copy = new HostCounts();
+				copy.requests = e.getValue().requests;
+				copy.errors = e.getValue().errors;
+				top.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), copy));
+			}
+		}
+		top.sort((a, b) -> Long.compare(b.getValue().requests, a.getValue().requests));
+		return top.subList(0, Math.min(reportedHosts, top.size()));
+	}
+
+	private static String errorType(Throwable e) {
+		if (e instanceof SocketTimeoutException) {
+			return String.valueOf(e.getMessage()).contains("connect") ? "timeout_connect" : "timeout_read";
+		}
+		if (e instanceof UnknownHostException) {
+			return "dns";
+		}
+		if (e instanceof ConnectException) {
+			return "connect";
+		}
+		if (e instanceof IOException) {
+			return "io";
+		}
+		return e.getClass().getSimpleName();
+	}
+
+	private static class HostCounts {
+		private long requests;
+		private long errors;
+	}
+}
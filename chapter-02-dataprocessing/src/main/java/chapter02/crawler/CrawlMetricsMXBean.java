@@ -0,0 +1,34 @@
+package chapter02.crawler;
+
+import java.util.Map;
+
+/**
+ * JMX로 노출되는 크롤러 지표. jconsole 등에서 chapter02.crawler:type=CrawlMetrics로 볼 수 있다.
+ */
+public interface CrawlMetricsMXBean {
+
+	long getRequests();
+
+	long getBytesTransferred();
+
+	long getBytesDecoded();
+
+	double getCompressionSavings();
+
+	long getFetchLatencyP50Micros();
+
+	long getFetchLatencyP99Micros();
+
+	long getStoreWriteLatencyP50Micros();
+
+	long getStoreWriteLatencyP99Micros();
+
+	/**
+	 * @return 요청이 많은 상위 호스트의 요청 수, 전체 호스트가 아니다
+	 */
+	Map<String, Long> getRequestsByHost();
+
+	Map<String, Long> getErrorsByType();
+
+	Map<String, Long> getGauges();
+}
@@ -0,0 +1,167 @@
+package chapter02.crawler;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import chapter02.RankedPage;
+import chapter02.metrics.LatencyHistogram;
+
+/**
+ * 로컬 합성 서버를 대상으로 수집 → 특징 추출 단계를 실행하고 처리량, 지연 시간 백분위,
+ * 할당 속도, 최대 스레드 수를 출력한다. 인자는 key=value 형식이며 모두 생략할 수 있다.
+ * 
+ * <pre>
+ * pages=5000 size=30000 latency=50 errors=0.01 timeouts=0.005 concurrency=64 timeout=2000
+ * </pre>
+ */
+public class CrawlerBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> params = parse(args);
+		int pages = Integer.parseInt(params.getOrDefault("pages", "5000"));
+		int size = Integer.parseInt(params.getOrDefault("size", "30000"));
+		double latency = Double.parseDouble(params.getOrDefault("latency", "50"));
+		double errors = Double.parseDouble(params.getOrDefault("errors", "0.01"));
+		double timeouts = Double.parseDouble(params.getOrDefault("timeouts", "0.005"));
+		int concurrency = Integer.parseInt(params.getOrDefault("concurrency", "64"));
+		int timeoutMillis = Integer.parseInt(params.getOrDefault("timeout", "2000"));
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		LongAdder succeeded = new LongAdder();
+		LongAdder failed = new LongAdder();
+		LongAdder extracted = new LongAdder();
+		// JDK keep-alive 캐시의 호스트별 유휴 연결 수, JVM 전체 설정이므로 첫 연결 전에 정한다
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", String.valueOf(concurrency));
+		}
+		FetchClient client = new FetchClient(timeoutMillis, timeoutMillis);
+
+		try (SyntheticSiteServer server = new SyntheticSiteServer(size, latency, errors, timeouts, 
+				timeoutMillis * 2L)) {
+			CrawlEngine.Fetcher fetcher = url -> {
+				long start = System.nanoTime();
+				try {
+					return client.fetch(url);
+				} finally {
+					latencies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				}
+			};
+
+			// 워밍업: JIT 컴파일과 연결 생성 비용을 측정에서 제외
+			run(server, fetcher, Math.min(500, pages), concurrency, timeoutMillis, new LongAdder(), 
+					new LongAdder(), new LongAdder());
+			latencies.reset();
+
+			AllocationSampler allocations = new AllocationSampler();
+			ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+			long start = System.nanoTime();
+			allocations.start();
+			run(server, fetcher, pages, concurrency, timeoutMillis, succeeded, failed, extracted);
+			long allocated = allocations.stop();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			int peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+
+			System.out.println("=========================== crawler benchmark");
+			System.out.printf("pages=%d, size=%d bytes, latency=%.0f ms, errors=%.3f, timeouts=%.3f, "
+					+ "concurrency=%d%n", pages, size, latency, errors, timeouts, concurrency);
+			System.out.printf("elapsed: %.2f s%n", seconds);
+			System.out.printf("throughput: %.1f pages/s (%d ok, %d failed, %d extracted)%n", 
+					succeeded.sum() / seconds, succeeded.sum(), failed.sum(), extracted.sum());
+			System.out.printf("fetch latency: %s%n", latencies);
+			System.out.printf("allocation rate: %.1f MB/s (%.1f KB per page)%n", 
+					allocated / seconds / 1024 / 1024, allocated / 1024.0 / Math.max(1, pages));
+			System.out.printf("peak threads: %d (including %d server threads)%n", peakThreads, 
+					server.threadCount());
+		}
+	}
+
+	private static void run(SyntheticSiteServer server, CrawlEngine.Fetcher fetcher, int pages, int concurrency,
+			int timeoutMillis, LongAdder succeeded, LongAdder failed, LongAdder extracted) {
+		try (CrawlEngine engine = new CrawlEngine(concurrency, timeoutMillis * 3L, TimeUnit.MILLISECONDS, fetcher)) {
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[pages];
+			for (int i = 0; i < pages; i++) {
+				String url = server.baseUrl() + "/page/" + i;
+				futures[i] = engine.submit(url, (crawled, result) -> {
+					RankedPage page = new RankedPage(crawled, 1, 1);
+					HtmlFeatureExtractor.extract("basketball", result.getBody(), page);
+					extracted.increment();
+				}).thenAccept(result -> {
+					if (result.isPresent()) {
+						succeeded.increment();
+					} else {
+						failed.increment();
+					}
+				});
+			}
+			CompletableFuture.allOf(futures).join();
+		}
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> params = new HashMap<>();
+		for (String arg : args) {
+			String[] split = arg.split("=", 2);
+			if (split.length == 2) {
+				params.put(split[0], split[1]);
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * 모든 스레드의 누적 할당 바이트를 주기적으로 읽어 측정 구간 동안의 할당량을 구한다.
+	 * 샘플 사이에 종료된 스레드의 마지막 할당분은 빠질 수 있다.
+	 */
+	private static class AllocationSampler {
+
+		private final com.sun.management.ThreadMXBean threads = 
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		private final Map<Long, Long> baseline = new ConcurrentHashMap<>();
+		private final Map<Long, Long> latest = new ConcurrentHashMap<>();
+		private volatile boolean running = false;
+		private Thread sampler;
+
+		void start() {
+			sample(baseline);
+			running = true;
+			sampler = new Thread(() -> {
+				while (running) {
+					sample(latest);
+					try {
+						Thread.sleep(50);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}, "allocation-sampler");
+			sampler.setDaemon(true);
+			sampler.start();
+		}
+
+		long stop() throws InterruptedException {
+			running = false;
+			sampler.join();
+			sample(latest);
+			long total = 0;
+			for (Map.Entry<Long, Long> e : latest.entrySet()) {
+				total = total + e.getValue() - baseline.getOrDefault(e.getKey(), 0L);
+			}
+			return total;
+		}
+
+		private void sample(Map<Long, Long> into) {
+			long[] ids = threads.getAllThreadIds();
+			long[] bytes = threads.getThreadAllocatedBytes(ids);
+			for (int i = 0; i < ids.length; i++) {
+				if (bytes[i] > 0) {
+					into.merge(ids[i], bytes[i], Math::max);
+				}
+			}
+		}
+	}
+}
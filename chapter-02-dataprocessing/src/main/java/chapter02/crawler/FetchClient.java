@@ -0,0 +1,133 @@
+package chapter02.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import chapter02.crawler.FetchResult.Validators;
+
+public class FetchClient {
+
+	private static final String USER_AGENT = "Mozilla/5.0 (compatible; chapter02-crawler)";
+
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+
+	public FetchClient() {
+		this(10_000, 20_000);
+	}
+
+	/**
+	 * 연결은 JDK의 keep-alive 캐시를 통해 호스트별로 재사용된다. 호스트별로 유지할 유휴 연결 수는
+	 * JVM 전체 설정인 http.maxConnections 시스템 속성(기본 5)으로 정해지며, 이 클래스는 바꾸지
+	 * 않는다. 바꾸려면 JVM에서 처음 연결을 맺기 전에 실행 코드에서 설정한다(예: {@code Crawler}).
+	 *
+	 * @param connectTimeoutMillis 연결 타임아웃
+	 * @param readTimeoutMillis 읽기 타임아웃
+	 */
+	public FetchClient(int connectTimeoutMillis, int readTimeoutMillis) {
+		Validate.isTrue(connectTimeoutMillis >= 0, "connectTimeoutMillis must not be negative");
+		Validate.isTrue(readTimeoutMillis >= 0, "readTimeoutMillis must not be negative");
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	public FetchResult fetch(String url) throws IOException {
+		return fetch(url, null);
+	}
+
+	/**
+	 * 압축(gzip, deflate)을 요청하고, validators가 주어지면 조건부 요청을 보낸다.
+	 * 서버가 304를 돌려주면 본문 없이 isNotModified()가 true인 결과를 반환한다.
+	 *
+	 * @param url 요청할 URL
+	 * @param validators 이전 크롤링에서 받은 ETag, Last-Modified (없으면 null)
+	 * @return 응답 상태, 본문, 새 validators, 실제 전송된 바이트 수
+	 */
+	public FetchResult fetch(String url, Validators validators) throws IOException {
+		URLConnection raw = new URL(url).openConnection();
+		raw.setConnectTimeout(connectTimeoutMillis);
+		raw.setReadTimeout(readTimeoutMillis);
+		raw.setRequestProperty("Accept-Encoding", "gzip, deflate");
+		raw.setRequestProperty("User-Agent", USER_AGENT);
+		if (validators != null) {
+			if (validators.getEtag() != null) {
+				raw.setRequestProperty("If-None-Match", validators.getEtag());
+			}
+			if (validators.getLastModified() != null) {
+				raw.setRequestProperty("If-Modified-Since", validators.getLastModified());
+			}
+		}
+
+		if (!(raw instanceof HttpURLConnection)) {
+			try (InputStream is = raw.getInputStream()) {
+				CountingInputStream counting = new CountingInputStream(is);
+				String body = IOUtils.toString(counting, StandardCharsets.UTF_8);
+				long bytes = counting.getByteCount();
+				return new FetchResult(url, 200, body, null, bytes, bytes);
+			}
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) raw;
+		int status = connection.getResponseCode();
+		Validators received = new Validators(connection.getHeaderField("ETag"),
+				connection.getHeaderField("Last-Modified"));
+
+		InputStream stream = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		if (stream == null) {
+			return new FetchResult(url, status, null, received, 0, 0);
+		}
+
+		// 본문을 끝까지 읽고 닫아야 연결이 keep-alive 캐시로 돌아간다
+		// decoded도 닫아야 GZIPInputStream/InflaterInputStream의 네이티브 Inflater가 바로 해제된다
+		try (CountingInputStream counting = new CountingInputStream(stream);
+				CountingInputStream decoded =
+						new CountingInputStream(decode(counting, connection.getContentEncoding()))) {
+			String body = IOUtils.toString(decoded, charsetOf(connection.getContentType()));
+			if (status == 304) {
+				body = null;
+			}
+			return new FetchResult(url, status, body, received, counting.getByteCount(),
+					decoded.getByteCount());
+		}
+	}
+
+	private static InputStream decode(InputStream is, String contentEncoding) throws IOException {
+		if (contentEncoding == null) {
+			return is;
+		}
+		String encoding = contentEncoding.trim().toLowerCase(Locale.US);
+		if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+			return new GZIPInputStream(is);
+		}
+		if ("deflate".equals(encoding)) {
+			return new InflaterInputStream(is);
+		}
+		return is;
+	}
+
+	private static Charset charsetOf(String contentType) {
+		String charset = StringUtils.substringAfter(StringUtils.lowerCase(contentType), "charset=");
+		charset = StringUtils.strip(StringUtils.substringBefore(charset, ";"), " \"'");
+		if (StringUtils.isEmpty(charset)) {
+			return StandardCharsets.UTF_8;
+		}
+		try {
+			return Charset.forName(charset);
+		} catch (IllegalArgumentException e) {
+			return StandardCharsets.UTF_8;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package chapter02.crawler;
+
+import java.io.Serializable;
+
+public class FetchResult {
+
+	private final String url;
+	private final int status;
+	private final String body;
+	private final Validators validators;
+	private final long transferredBytes;
+	private final long decodedBytes;
+
+	public FetchResult(String url, int status, String body, Validators validators, long transferredBytes,
+			long decodedBytes) {
+		this.url = url;
+		this.status = status;
+		this.body = body;
+		this.validators = validators;
+		this.transferredBytes = transferredBytes;
+		this.decodedBytes = decodedBytes;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getBody() {
+		return body;
+	}
+
+	public Validators getValidators() {
+		return validators;
+	}
+
+	public long getTransferredBytes() {
+		return transferredBytes;
+	}
+
+	/**
+	 * @return 압축을 푼 본문의 바이트 수
+	 */
+	public long getDecodedBytes() {
+		return decodedBytes;
+	}
+
+	public boolean isNotModified() {
+		return status == 304;
+	}
+
+	public boolean isSuccessful() {
+		return status >= 200 && status < 300;
+	}
+
+	@Override
+	public String toString() {
+		return "FetchResult [url=" + url + ", status=" + status + ", transferredBytes=" + transferredBytes
+				+ ", decodedBytes=" + decodedBytes + "]";
+	}
+
+	/**
+	 * 조건부 요청(If-None-Match, If-Modified-Since)에 사용하는 ETag와 Last-Modified 값.
+	 * 페이지와 같은 MapDB 파일에 저장되므로 Serializable이어야 한다.
+	 */
+	public static class Validators implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String etag;
+		private final String lastModified;
+
+		public Validators(String etag, String lastModified) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public boolean isEmpty() {
+			return etag == null && lastModified == null;
+		}
+
+		@Override
+		public String toString() {
+			return "Validators [etag=" + etag + ", lastModified=" + lastModified + "]";
+		}
+	}
+}
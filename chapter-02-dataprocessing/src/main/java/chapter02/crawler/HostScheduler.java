@@ -0,0 +1,191 @@
+package chapter02.crawler;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * URL을 호스트별 대기열로 나누고, 호스트마다 동시 요청 수와 초당 요청 수(토큰 버킷)를
+ * 제한하면서 호스트를 돌아가며 URL을 꺼낸다. 한 도메인에 요청이 몰리지 않으면서도
+ * 다른 호스트는 쉬지 않게 된다. 대기 중인 URL도 진행 중인 요청도 없는 호스트는 토큰 버킷이 다
+ * 찰 만큼 쉬고 나면 지운다. 그때는 새로 만든 대기열과 같으므로 요청 제한이 풀리지 않는다.
+ */
+public class HostScheduler {
+
+	private final int maxPerHost;
+	private final double permitsPerSecond;
+	private final int burst;
+	private final long refillNanos;
+
+	private final Map<String, HostQueue> hosts = new HashMap<>();
+	private final Queue<HostQueue> rotation = new ArrayDeque<>();
+	private final Queue<Idle> idle = new ArrayDeque<>();
+	private int queued = 0;
+
+	public HostScheduler() {
+		this(2, 1.0, 2);
+	}
+
+	/**
+	 * @param maxPerHost 호스트별 최대 동시 요청 수
+	 * @param permitsPerSecond 호스트별 초당 요청 수
+	 * @param burst 토큰 버킷 크기, 한 번에 몰아서 보낼 수 있는 요청 수
+	 */
+	public HostScheduler(int maxPerHost, double permitsPerSecond, int burst) {
+		Validate.isTrue(maxPerHost > 0, "maxPerHost must be positive");
+		Validate.isTrue(permitsPerSecond > 0, "permitsPerSecond must be positive");
+		Validate.isTrue(burst > 0, "burst must be positive");
+		this.maxPerHost = maxPerHost;
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.refillNanos = (long) Math.ceil(burst / permitsPerSecond * 1e9);
+	}
+
+	public synchronized void add(String url) {
+		evictIdle(System.nanoTime());
+		String host = hostOf(url);
+		HostQueue queue = hosts.get(host);
+		if (queue == null) {
+			queue = new HostQueue(host, System.nanoTime());
+			hosts.put(host, queue);
+		}
+		if (queue.urls.isEmpty()) {
+			rotation.add(queue);
+		}
+		queue.urls.add(url);
+		queued++;
+		notifyAll();
+	}
+
+	/**
+	 * 보낼 수 있는 다음 URL을 꺼낸다. 꺼낸 URL은 요청이 끝나면 반드시 {@link #release(String)}로
+	 * 반환해야 같은 호스트의 다음 요청이 나갈 수 있다.
+	 *
+	 * @return 다음 URL, 제한 시간 안에 보낼 수 있는 URL이 없으면 null
+	 */
+	public synchronized String take(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			long now = System.nanoTime();
+			long minWait = Long.MAX_VALUE;
+
+			int size = rotation.size();
+			for (int i = 0; i < size; i++) {
+				HostQueue queue = rotation.poll();
+				long wait = queue.waitNanos(now);
+				if (wait == 0) {
+					String url = queue.urls.poll();
+					queue.tokens = queue.tokens - 1.0;
+					queue.active++;
+					queued--;
+					if (!queue.urls.isEmpty()) {
+						rotation.add(queue);
+					}
+					return url;
+				}
+				rotation.add(queue);
+				minWait = Math.min(minWait, wait);
+			}
+
+			long remaining = deadline - now;
+			if (remaining <= 0) {
+				return null;
+			}
+			long waitNanos = Math.min(remaining, minWait);
+			TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+		}
+	}
+
+	public synchronized void release(String url) {
+		HostQueue queue = hosts.get(hostOf(url));
+		if (queue != null && queue.active > 0) {
+			queue.active--;
+			long now = System.nanoTime();
+			if (queue.active == 0 && queue.urls.isEmpty()) {
+				queue.idleSinceNanos = now;
+				idle.add(new Idle(queue, now));
+			}
+			evictIdle(now);
+			notifyAll();
+		}
+	}
+
+	public synchronized int queued() {
+		return queued;
+	}
+
+	public synchronized int hostCount() {
+		return hosts.size();
+	}
+
+	/**
+	 * 쉬기 시작한 순서대로 보면서 refillNanos 이상 쉰 호스트를 지운다. 그동안 다시 URL을 받았거나
+	 * 나중에 다시 쉬기 시작한 항목은 버리기만 한다. 후자는 대기열 뒤쪽에 한 번 더 들어 있다.
+	 */
+	private void evictIdle(long now) {
+		while (!idle.isEmpty() && now - idle.peek().sinceNanos >= refillNanos) {
+			Idle entry = idle.poll();
+			HostQueue queue = entry.queue;
+			if (queue.active == 0 && queue.urls.isEmpty() && queue.idleSinceNanos == entry.sinceNanos
+					&& hosts.get(queue.host) == queue) {
+				hosts.remove(queue.host);
+			}
+		}
+	}
+
+	public static String hostOf(String url) {
+		try {
+			String host = URI.create(url).getHost();
+			return host == null ? "" : host.toLowerCase(Locale.US);
+		} catch (IllegalArgumentException e) {
+			return "";
+		}
+	}
+
+	private class HostQueue {
+		private final String host;
+		private final Queue<String> urls = new ArrayDeque<>();
+		private int active = 0;
+		private double tokens;
+		private long lastRefillNanos;
+		private long idleSinceNanos;
+
+		HostQueue(String host, long now) {
+			this.host = host;
+			this.tokens = burst;
+			this.lastRefillNanos = now;
+		}
+
+		/**
+		 * @return 지금 요청을 보낼 수 있으면 0, 토큰이 모자라면 다음 토큰까지 남은 시간,
+		 *         동시 요청 수가 가득 찼으면 Long.MAX_VALUE (release에서 깨운다)
+		 */
+		long waitNanos(long now) {
+			tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * permitsPerSecond);
+			lastRefillNanos = now;
+			if (active >= maxPerHost) {
+				return Long.MAX_VALUE;
+			}
+			if (tokens >= 1.0) {
+				return 0;
+			}
+			return (long) Math.ceil((1.0 - tokens) / permitsPerSecond * 1e9);
+		}
+	}
+
+	private static class Idle {
+		private final HostQueue queue;
+		private final long sinceNanos;
+
+		Idle(HostQueue queue, long sinceNanos) {
+			this.queue = queue;
+			this.sinceNanos = sinceNanos;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package chapter02.crawler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.parser.Parser;
+
+import chapter02.RankedPage;
+
+/**
+ * DOM을 만들지 않고 UTF-8 바이트를 한 번만 훑어서 RankedPage 특징을 계산한다.
+ * 결과는 Jsoup의 document.title(), body().text() 등과 거의 같지만 잘못된 HTML에 대한
+ * 트리 보정은 하지 않으므로 본문 길이는 약간 다를 수 있다.
+ */
+public class HtmlFeatureExtractor {
+
+	private static final int NAME_BITS = 6;
+	private static final int MAX_NAME_LENGTH = 10;
+
+	private static final long A = nameCode("a");
+	private static final long TITLE = nameCode("title");
+	private static final long SCRIPT = nameCode("script");
+	private static final long STYLE = nameCode("style");
+	private static final long HEAD = nameCode("head");
+	private static final long[] HEADERS = sortedCodes("h1", "h2", "h3", "h4", "h5", "h6");
+	private static final long[] BLOCKS = sortedCodes("address", "article", "aside", "blockquote", "br",
+			"dd", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form", "h1", "h2", "h3",
+			"h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre", "section", "table",
+			"tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+
+	private final byte[] html;
+	private int pos = 0;
+
+	private int bodyContentLength = 0;
+	private boolean seenText = false;
+	private boolean pendingSpace = false;
+	private boolean inHead = false;
+	private int numberOfLinks = 0;
+	private int numberOfHeaders = 0;
+	private String title = null;
+
+	private HtmlFeatureExtractor(byte[] html) {
+		this.html = html;
+	}
+
+	public static void extract(String query, String html, RankedPage page) {
+		extract(query, html.getBytes(StandardCharsets.UTF_8), page);
+	}
+
+	/**
+	 * titleLength, queryInTitle, bodyContentLength, numberOfLinks, numberOfHeaders를
+	 * 한 번의 스캔으로 계산해 page에 채운다.
+	 *
+	 * @param query 검색어
+	 * @param html UTF-8로 인코딩된 HTML
+	 * @param page 특징을 채울 객체
+	 */
+	public static void extract(String query, byte[] html, RankedPage page) {
+		HtmlFeatureExtractor extractor = new HtmlFeatureExtractor(html);
+		extractor.scan();
+
+		String title = extractor.title == null ? "" : extractor.title;
+		page.setTitleLength(title.length());
+		page.setQueryInTitle(StringUtils.containsIgnoreCase(title, query));
+		page.setBodyContentLength(extractor.bodyContentLength);
+		page.setNumberOfLinks(extractor.numberOfLinks);
+		page.setNumberOfHeaders(extractor.numberOfHeaders);
+	}
+
+	private void scan() {
+		int length = html.length;
+		while (pos < length) {
+			byte b = html[pos];
+			if (b == '<') {
+				tag();
+			} else if (b == '&') {
+				entity();
+			} else {
+				text(b);
+				pos++;
+			}
+		}
+	}
+
+	private void tag() {
+		int start = pos;
+		pos++;
+		if (pos >= html.length) {
+			text((byte) '<');
+			return;
+		}
+
+		byte b = html[pos];
+		if (b == '!') {
+			if (startsWith("!--", pos)) {
+				skipPast("-->", pos + 3);
+			} else {
+				skipPast(">", pos);
+			}
+			return;
+		}
+		if (b == '?') {
+			skipPast(">", pos);
+			return;
+		}
+
+		boolean endTag = b == '/';
+		if (endTag) {
+			pos++;
+		}
+		if (pos >= html.length || !isLetter(html[pos])) {
+			// "<" 다음에 태그 이름이 오지 않으면 일반 텍스트로 취급
+			pos = start + 1;
+			text((byte) '<');
+			return;
+		}
+
+		long name = readName();
+		skipPast(">", pos);
+
+		if (endTag) {
+			if (name == HEAD) {
+				inHead = false;
+			}
+			return;
+		}
+
+		if (name == HEAD) {
+			inHead = true;
+		} else if (name == A) {
+			numberOfLinks++;
+		} else if (Arrays.binarySearch(HEADERS, name) >= 0) {
+			numberOfHeaders++;
+		}
+		// Jsoup과 같이 블록 요소가 시작될 때만 공백을 넣는다
+		if (isBlock(name)) {
+			pendingSpace = true;
+		}
+
+		if (name == TITLE) {
+			int end = rawTextEnd("title");
+			if (title == null) {
+				String raw = new String(html, pos, end - pos, StandardCharsets.UTF_8);
+				title = StringUtils.normalizeSpace(Parser.unescapeEntities(raw, false));
+			}
+			pos = end;
+		} else if (name == SCRIPT) {
+			pos = rawTextEnd("script");
+		} else if (name == STYLE) {
+			pos = rawTextEnd("style");
+		}
+	}
+
+	private void entity() {
+		int end = pos + 1;
+		int limit = Math.min(html.length, pos + 33);
+		while (end < limit && (isLetter(html[end]) || isDigit(html[end]) || html[end] == '#')) {
+			end++;
+		}
+		if (end < limit && end > pos + 1 && html[end] == ';') {
+			// 엔티티 하나는 디코딩하면 문자 하나가 된다
+			countChars(1);
+			pos = end + 1;
+		} else {
+			text((byte) '&');
+			pos++;
+		}
+	}
+
+	private void text(byte b) {
+		if (inHead) {
+			return;
+		}
+		if (b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f') {
+			pendingSpace = true;
+			return;
+		}
+		if ((b & 0xC0) == 0x80) {
+			// UTF-8 연속 바이트는 앞선 문자에 이미 포함됨
+			return;
+		}
+		// 4바이트 UTF-8 문자는 자바 String에서 surrogate pair, 즉 2글자다
+		countChars((b & 0xF8) == 0xF0 ? 2 : 1);
+	}
+
+	private void countChars(int chars) {
+		if (inHead) {
+			return;
+		}
+		if (pendingSpace && seenText) {
+			bodyContentLength++;
+		}
+		bodyContentLength += chars;
+		seenText = true;
+		pendingSpace = false;
+	}
+
+	private long readName() {
+		long code = 0;
+		int length = 0;
+		while (pos < html.length && (isLetter(html[pos]) || isDigit(html[pos]))) {
+			if (length < MAX_NAME_LENGTH) {
+				code = (code << NAME_BITS) | charCode(html[pos]);
+			}
+			length++;
+			pos++;
+		}
+		return length <= MAX_NAME_LENGTH ? code : -1;
+	}
+
+	private int rawTextEnd(String name) {
+		int i = pos;
+		while (i < html.length) {
+			if (html[i] == '<' && i + 1 < html.length && html[i + 1] == '/'
+					&& startsWithIgnoreCase(name, i + 2)) {
+				return i;
+			}
+			i++;
+		}
+		return html.length;
+	}
+
+	private void skipPast(String marker, int from) {
+		char quote = 0;
+		int i = from;
+		while (i < html.length) {
+			byte b = html[i];
+			if (marker.length() == 1 && (b == '"' || b == '\'')) {
+				if (quote == 0) {
+					quote = (char) b;
+				} else if (quote == b) {
+					quote = 0;
+				}
+			} else if (quote == 0 && startsWith(marker, i)) {
+				pos = i + marker.length();
+				return;
+			}
+			i++;
+		}
+		pos = html.length;
+	}
+
+	private boolean startsWith(String marker, int from) {
+		if (from + marker.length() > html.length) {
+			return false;
+		}
+		for (int i = 0; i < marker.length(); i++) {
+			if (html[from + i] != marker.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean startsWithIgnoreCase(String lowerCaseName, int from) {
+		if (from + lowerCaseName.length() > html.length) {
+			return false;
+		}
+		for (int i = 0; i < lowerCaseName.length(); i++) {
+			if ((html[from + i] | 0x20) != lowerCaseName.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isBlock(long name) {
+		return Arrays.binarySearch(BLOCKS, name) >= 0;
+	}
+
+	private static boolean isLetter(byte b) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static long charCode(byte b) {
+		if (isDigit(b)) {
+			return 27 + (b - '0');
+		}
+		return 1 + ((b | 0x20) - 'a');
+	}
+
+	private static long nameCode(String name) {
+		long code = 0;
+		for (int i = 0; i < name.length(); i++) {
+			code = (code << NAME_BITS) | charCode((byte) name.charAt(i));
+		}
+		return code;
+	}
+
+	private static long[] sortedCodes(String... names) {
+		long[] codes = new long[names.length];
+		for (int i = 0; i < names.length; i++) {
+			codes[i] = nameCode(names[i]);
+		}
+		Arrays.sort(codes);
+		return codes;
+	}
+}
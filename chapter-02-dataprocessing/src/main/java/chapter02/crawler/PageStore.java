@@ -0,0 +1,392 @@
+package chapter02.crawler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang3.Validate;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import chapter02.crawler.FetchResult.Validators;
+
+/**
+ * 크롤링한 HTML을 MapDB에 deflate로 압축된 byte[]로 저장한다. HTML 페이지들은 서로 비슷한
+ * 조각이 많으므로 학습된 공유 사전(preset dictionary)을 쓰면 작은 페이지도 잘 압축된다.
+ */
+public class PageStore implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageStore.class);
+
+	private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+	private static final byte NO_DICTIONARY = 0;
+	private static final int HEADER_SIZE = 5;
+
+	private final DB db;
+	private final HTreeMap<String, byte[]> pages;
+	private final HTreeMap<String, Validators> validators;
+	private final HTreeMap<Integer, byte[]> dictionaries;
+	private final int commitInterval;
+	private final AtomicInteger uncommitted = new AtomicInteger();
+	private final Map<Integer, byte[]> dictionaryCache = new ConcurrentHashMap<>();
+	private volatile int currentDictionary = NO_DICTIONARY;
+
+	private final ThreadLocal<Deflater> deflaters =
+			ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION));
+	private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+	private final LongAdder writes = new LongAdder();
+	private final LongAdder writeNanos = new LongAdder();
+	private final LongAdder reads = new LongAdder();
+	private final LongAdder readNanos = new LongAdder();
+	private final LongAdder rawBytes = new LongAdder();
+	private final LongAdder storedBytes = new LongAdder();
+
+	public PageStore(String file) {
+		this(file, true, 1000);
+	}
+
+	/**
+	 * @param file MapDB 파일 경로
+	 * @param mmap 가능한 경우 메모리 맵 볼륨 사용
+	 * @param commitInterval 이 횟수만큼 쓰기가 쌓이면 한 번에 커밋
+	 */
+	public PageStore(String file, boolean mmap, int commitInterval) {
+		Validate.isTrue(commitInterval > 0, "commitInterval must be positive");
+		DBMaker.Maker maker = DBMaker.fileDB(file).transactionEnable().closeOnJvmShutdown();
+		if (mmap) {
+			maker = maker.fileMmapEnableIfSupported();
+		}
+		this.db = maker.make();
+		this.pages = db.hashMap("pages", Serializer.STRING, Serializer.BYTE_ARRAY).createOrOpen();
+		this.validators = db.hashMap("validators", Serializer.STRING, new ValidatorsSerializer()).createOrOpen();
+		this.dictionaries = db.hashMap("dictionaries", Serializer.INTEGER, Serializer.BYTE_ARRAY).createOrOpen();
+		this.commitInterval = commitInterval;
+
+		dictionaries.forEach((id, dictionary) -> {
+			dictionaryCache.put(id, dictionary);
+			currentDictionary = Math.max(currentDictionary, id);
+		});
+	}
+
+	public void put(String url, String html) {
+		put(url, html.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void put(String url, byte[] html) {
+		long start = System.nanoTime();
+		byte[] compressed = compress(html);
+		pages.put(url, compressed);
+		maybeCommit();
+
+		writes.increment();
+		writeNanos.add(System.nanoTime() - start);
+		rawBytes.add(html.length);
+		storedBytes.add(compressed.length);
+	}
+
+	public String get(String url) {
+		byte[] html = getBytes(url);
+		return html == null ? null : new String(html, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return 압축을 푼 UTF-8 HTML, 없으면 null
+	 */
+	public byte[] getBytes(String url) {
+		long start = System.nanoTime();
+		byte[] compressed = pages.get(url);
+		byte[] html = compressed == null ? null : decompress(compressed);
+
+		reads.increment();
+		readNanos.add(System.nanoTime() - start);
+		return html;
+	}
+
+	public boolean containsKey(String url) {
+		return pages.containsKey(url);
+	}
+
+	public int size() {
+		return pages.size();
+	}
+
+	public Set<String> urls() {
+		return pages.getKeys();
+	}
+
+	public Validators getValidators(String url) {
+		return validators.get(url);
+	}
+
+	public void putValidators(String url, Validators value) {
+		validators.put(url, value);
+		maybeCommit();
+	}
+
+	public boolean hasDictionary() {
+		return currentDictionary != NO_DICTIONARY;
+	}
+
+	/**
+	 * 이미 저장된 페이지 중 최대 sampleSize개를 사용해 공유 사전을 학습한다.
+	 */
+	public void trainDictionary(int sampleSize) {
+		List<byte[]> samples = new ArrayList<>();
+		Iterator<String> it = pages.getKeys().iterator();
+		while (it.hasNext() && samples.size() < sampleSize) {
+			byte[] html = getBytes(it.next());
+			if (html != null) {
+				samples.add(html);
+			}
+		}
+		trainDictionary(samples);
+	}
+
+	/**
+	 * 여러 문서에 반복해서 나타나는 태그 조각을 모아 최대 32KB의 deflate 사전을 만든다.
+	 * 이후 쓰기는 새 사전을 사용하고, 기존 값은 저장될 때 사용한 사전으로 계속 읽을 수 있다.
+	 *
+	 * @param samples UTF-8 HTML 샘플
+	 */
+	public synchronized void trainDictionary(List<byte[]> samples) {
+		if (samples.size() < 2) {
+			LOGGER.info("not enough samples to train a dictionary: {}", samples.size());
+			return;
+		}
+		Validate.isTrue(currentDictionary < 255, "too many dictionaries");
+
+		byte[] dictionary = buildDictionary(samples);
+		int id = currentDictionary + 1;
+		dictionaries.put(id, dictionary);
+		dictionaryCache.put(id, dictionary);
+		db.commit();
+		currentDictionary = id;
+		LOGGER.info("trained dictionary {} of {} bytes from {} samples", id, dictionary.length, samples.size());
+	}
+
+	public synchronized void commit() {
+		uncommitted.set(0);
+		db.commit();
+	}
+
+	public Stats stats() {
+		return new Stats(writes.sum(), writeNanos.sum(), reads.sum(), readNanos.sum(), rawBytes.sum(),
+				storedBytes.sum());
+	}
+
+	@Override
+	public void close() {
+		commit();
+		db.close();
+	}
+
+	private void maybeCommit() {
+		if (uncommitted.incrementAndGet() >= commitInterval) {
+			commit();
+		}
+	}
+
+	private byte[] compress(byte[] html) {
+		int dictionaryId = currentDictionary;
+		Deflater deflater = deflaters.get();
+		deflater.reset();
+		if (dictionaryId != NO_DICTIONARY) {
+			deflater.setDictionary(dictionaryCache.get(dictionaryId));
+		}
+		deflater.setInput(html);
+		deflater.finish();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(html.length / 4 + HEADER_SIZE);
+		out.write(dictionaryId);
+		byte[] length = ByteBuffer.allocate(4).putInt(html.length).array();
+		out.write(length, 0, length.length);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(buffer);
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private byte[] decompress(byte[] compressed) {
+		ByteBuffer header = ByteBuffer.wrap(compressed, 0, HEADER_SIZE);
+		int dictionaryId = header.get() & 0xFF;
+		int length = header.getInt();
+
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE);
+		byte[] html = new byte[length];
+		try {
+			int offset = 0;
+			while (offset < length) {
+				int n = inflater.inflate(html, offset, length - offset);
+				if (n == 0 && inflater.needsDictionary()) {
+					inflater.setDictionary(dictionaryCache.get(dictionaryId));
+				} else if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new IllegalStateException("truncated page, expected " + length + " bytes");
+				}
+				offset = offset + n;
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("corrupted page", e);
+		}
+		return html;
+	}
+
+	private static byte[] buildDictionary(List<byte[]> samples) {
+		// 태그 단위 조각마다 몇 개의 문서에 나타나는지 센다
+		Map<ByteBuffer, Integer> documentFrequency = new HashMap<>();
+		for (byte[] sample : samples) {
+			Set<ByteBuffer> seen = new HashSet<>();
+			int start = 0;
+			for (int i = 1; i <= sample.length; i++) {
+				if (i == sample.length || sample[i] == '<') {
+					int length = i - start;
+					if (length >= 4 && length <= 256) {
+						seen.add(ByteBuffer.wrap(sample, start, length).slice());
+					}
+					start = i;
+				}
+			}
+			for (ByteBuffer segment : seen) {
+				documentFrequency.merge(segment, 1, Integer::sum);
+			}
+		}
+
+		List<Map.Entry<ByteBuffer, Integer>> candidates = new ArrayList<>();
+		for (Map.Entry<ByteBuffer, Integer> e : documentFrequency.entrySet()) {
+			if (e.getValue() > 1) {
+				candidates.add(e);
+			}
+		}
+		Comparator<Map.Entry<ByteBuffer, Integer>> bySavings =
+				Comparator.comparingLong(e -> (long) e.getValue() * e.getKey().remaining());
+		Collections.sort(candidates, bySavings.reversed());
+
+		List<ByteBuffer> selected = new ArrayList<>();
+		int size = 0;
+		for (Map.Entry<ByteBuffer, Integer> e : candidates) {
+			int length = e.getKey().remaining();
+			if (size + length > MAX_DICTIONARY_SIZE) {
+				continue;
+			}
+			selected.add(e.getKey());
+			size = size + length;
+		}
+
+		// deflate는 가까운 거리의 일치를 더 싸게 인코딩하므로 가장 유용한 조각을 끝에 둔다
+		Collections.reverse(selected);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+		for (ByteBuffer segment : selected) {
+			out.write(segment.array(), segment.arrayOffset() + segment.position(), segment.remaining());
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Validators를 (있음 여부, 값) 쌍 두 개로 저장한다. 자바 직렬화보다 작고 타입이 정해져 있다.
+	 */
+	private static class ValidatorsSerializer implements Serializer<Validators> {
+
+		@Override
+		public void serialize(DataOutput2 out, Validators value) throws IOException {
+			writeNullable(out, value.getEtag());
+			writeNullable(out, value.getLastModified());
+		}
+
+		@Override
+		public Validators deserialize(DataInput2 in, int available) throws IOException {
+			return new Validators(readNullable(in), readNullable(in));
+		}
+
+		private static void writeNullable(DataOutput2 out, String value) throws IOException {
+			out.writeBoolean(value != null);
+			if (value != null) {
+				out.writeUTF(value);
+			}
+		}
+
+		private static String readNullable(DataInput2 in) throws IOException {
+			return in.readBoolean() ? in.readUTF() : null;
+		}
+	}
+
+	public static class Stats {
+
+		private final long writes;
+		private final long writeNanos;
+		private final long reads;
+		private final long readNanos;
+		private final long rawBytes;
+		private final long storedBytes;
+
+		public Stats(long writes, long writeNanos, long reads, long readNanos, long rawBytes, long storedBytes) {
+			this.writes = writes;
+			this.writeNanos = writeNanos;
+			this.reads = reads;
+			this.readNanos = readNanos;
+			this.rawBytes = rawBytes;
+			this.storedBytes = storedBytes;
+		}
+
+		public long getWrites() {
+			return writes;
+		}
+
+		public long getReads() {
+			return reads;
+		}
+
+		public long getRawBytes() {
+			return rawBytes;
+		}
+
+		public long getStoredBytes() {
+			return storedBytes;
+		}
+
+		public double getCompressionRatio() {
+			return storedBytes == 0 ? 0.0 : (double) rawBytes / storedBytes;
+		}
+
+		public double getMeanWriteMicros() {
+			return writes == 0 ? 0.0 : writeNanos / 1000.0 / writes;
+		}
+
+		public double getMeanReadMicros() {
+			return reads == 0 ? 0.0 : readNanos / 1000.0 / reads;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Stats [writes=%d, reads=%d, rawBytes=%d, storedBytes=%d, compressionRatio=%.2f, "
+					+ "meanWriteMicros=%.1f, meanReadMicros=%.1f]", writes, reads, rawBytes, storedBytes,
+					getCompressionRatio(), getMeanWriteMicros(), getMeanReadMicros());
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package chapter02.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 크기가 제한된 대기열과 고정된 수의 작업 스레드로 이루어진 파이프라인 단계.
+ * 대기열이 가득 차면 submit이 막히므로 뒷 단계가 느리면 앞 단계도 자연스럽게 느려진다.
+ */
+public class PipelineStage<T> implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PipelineStage.class);
+
+	private static final Object END = new Object();
+
+	private final String name;
+	private final BlockingQueue<Object> queue;
+	private final List<Thread> workers = new ArrayList<>();
+
+	/**
+	 * @param name 단계 이름 (스레드 이름과 로그에 사용)
+	 * @param parallelism 작업 스레드 수
+	 * @param capacity 대기열 크기
+	 * @param consumer 각 항목을 처리할 함수
+	 */
+	public PipelineStage(String name, int parallelism, int capacity, Consumer<T> consumer) {
+		Validate.isTrue(parallelism > 0, "parallelism must be positive");
+		this.name = name;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		for (int i = 0; i < parallelism; i++) {
+			Thread worker = new Thread(() -> run(consumer), name + "-" + (i + 1));
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+	}
+
+	public void submit(T item) throws InterruptedException {
+		queue.put(item);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int queueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * 대기열에 남은 항목을 모두 처리한 뒤 작업 스레드를 종료한다. 기다리는 중에 인터럽트되면
+	 * 인터럽트 상태를 복원하고 바로 반환한다.
+	 */
+	@Override
+	public void close() {
+		try {
+			for (int i = 0; i < workers.size(); i++) {
+				queue.put(END);
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warn("interrupted while closing stage {}", name);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void run(Consumer<T> consumer) {
+		while (true) {
+			Object item;
+			try {
+				item = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (item == END) {
+				return;
+			}
+			try {
+				consumer.accept((T) item);
+			} catch (Exception e) {
+				LOGGER.error("stage {} failed to process {}", name, item, e);
+			}
+		}
+	}
+}
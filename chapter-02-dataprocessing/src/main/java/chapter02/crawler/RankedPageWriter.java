@@ -0,0 +1,49 @@
+package chapter02.crawler;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+import chapter02.RankedPage;
+
+/**
+ * RankedPage를 한 줄에 하나씩 JSON으로 기록한다 (JSON Lines).
+ * chapter03, chapter04에서 읽는 ranked-pages.json과 같은 형식이다.
+ */
+public class RankedPageWriter implements Closeable {
+
+	private final BufferedWriter writer;
+	private long written = 0;
+
+	public RankedPageWriter(Path path, boolean append) throws IOException {
+		StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+		this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, mode);
+	}
+
+	public synchronized void write(RankedPage page) {
+		try {
+			writer.write(JSON.std.asString(page));
+			writer.newLine();
+			written++;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public synchronized long getWritten() {
+		return written;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+}
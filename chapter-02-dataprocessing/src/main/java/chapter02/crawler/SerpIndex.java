@@ -0,0 +1,106 @@
+package chapter02.crawler;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+/**
+ * URL별 검색 결과 정보(질의어, 순위)를 임시 MapDB 파일의 정렬된 집합에 보관한다. 키는
+ * "URL\t질의어\t순위"이므로 한 URL의 항목은 접두사 범위 조회로 찾고, URL 목록은 다음 URL로
+ * 건너뛰며 훑는다. 검색 결과 파일이 커져도 힙 사용량은 일정하며, 파일은 close할 때 지워진다.
+ */
+public class SerpIndex implements Closeable {
+
+	private static final char SEPARATOR = '\t';
+	private static final String UPPER_BOUND = SEPARATOR + "\uFFFF";
+
+	private final DB db;
+	private final NavigableSet<String> entries;
+
+	public SerpIndex() {
+		this.db = DBMaker.tempFileDB().fileMmapEnableIfSupported().closeOnJvmShutdown().make();
+		this.entries = db.treeSet("serp", Serializer.STRING).createOrOpen();
+	}
+
+	public void add(String url, String query, int position) {
+		entries.add(url + SEPARATOR + query + SEPARATOR + position);
+	}
+
+	/**
+	 * @return url이 나온 검색 결과, 질의어 순서
+	 */
+	public List<Hit> get(String url) {
+		List<Hit> hits = new ArrayList<>();
+		for (String key : entries.subSet(url + SEPARATOR, true, url + UPPER_BOUND, false)) {
+			int position = key.lastIndexOf(SEPARATOR);
+			String query = key.substring(url.length() + 1, position);
+			hits.add(new Hit(query, Integer.parseInt(key.substring(position + 1))));
+		}
+		return hits;
+	}
+
+	/**
+	 * @return 서로 다른 URL을 정렬 순서로 하나씩 돌려주는 반복자, 목록을 메모리에 모으지 않는다
+	 */
+	public Iterator<String> urls() {
+		return new Iterator<String>() {
+			private String next = entries.isEmpty() ? null : urlOf(entries.first());
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public String next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				String url = next;
+				String following = entries.higher(url + UPPER_BOUND);
+				next = following == null ? null : urlOf(following);
+				return url;
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+		db.close();
+	}
+
+	private static String urlOf(String key) {
+		return key.substring(0, key.indexOf(SEPARATOR));
+	}
+
+	public static class Hit {
+
+		private final String query;
+		private final int position;
+
+		public Hit(String query, int position) {
+			this.query = query;
+			this.position = position;
+		}
+
+		public String getQuery() {
+			return query;
+		}
+
+		public int getPosition() {
+			return position;
+		}
+
+		@Override
+		public String toString() {
+			return "Hit [query=" + query + ", position=" + position + "]";
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package chapter02.crawler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 크롤러를 실제 웹 없이 측정하기 위한 로컬 HTTP 서버. 지정한 크기의 합성 HTML을 돌려주며
+ * 응답 지연(지수 분포), 오류(HTTP 500), 타임아웃(응답을 오래 보류)을 지정한 비율로 흉내낸다.
+ * 지연된 응답은 스케줄러에서 보내므로 서버 스레드 수는 동시 요청 수와 관계없이 일정하다.
+ */
+public class SyntheticSiteServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService handlers;
+	private final ScheduledExecutorService responders;
+	private final byte[] page;
+	private final double meanLatencyMillis;
+	private final double errorRate;
+	private final double timeoutRate;
+	private final long hangMillis;
+
+	/**
+	 * @param pageSize 응답 본문 크기 (바이트)
+	 * @param meanLatencyMillis 평균 응답 지연
+	 * @param errorRate HTTP 500을 돌려줄 비율
+	 * @param timeoutRate hangMillis 동안 응답하지 않을 비율
+	 * @param hangMillis 타임아웃을 흉내낼 때 응답을 보류하는 시간
+	 */
+	public SyntheticSiteServer(int pageSize, double meanLatencyMillis, double errorRate, double timeoutRate,
+			long hangMillis) throws IOException {
+		this.page = syntheticHtml(pageSize, 42L);
+		this.meanLatencyMillis = meanLatencyMillis;
+		this.errorRate = errorRate;
+		this.timeoutRate = timeoutRate;
+		this.hangMillis = hangMillis;
+
+		this.handlers = Executors.newFixedThreadPool(2);
+		this.responders = Executors.newScheduledThreadPool(2);
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(handlers);
+		this.server.start();
+	}
+
+	public String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * 서버가 사용하는 스레드 수. 측정 결과에서 크롤러 스레드 수를 구할 때 뺀다.
+	 */
+	public int threadCount() {
+		return 2 + 2 + 1;
+	}
+
+	private void handle(HttpExchange exchange) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		double roll = random.nextDouble();
+		long delay;
+		int status;
+		if (roll < timeoutRate) {
+			delay = hangMillis;
+			status = 200;
+		} else {
+			delay = (long) (-Math.log(1.0 - random.nextDouble()) * meanLatencyMillis);
+			status = roll < timeoutRate + errorRate ? 500 : 200;
+		}
+		responders.schedule(() -> respond(exchange, status), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void respond(HttpExchange exchange, int status) {
+		try {
+			byte[] body = status == 200 ? page : "<html><body>error</body></html>".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		} catch (IOException e) {
+			// 클라이언트가 타임아웃으로 먼저 연결을 끊은 경우
+		} finally {
+			exchange.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		responders.shutdownNow();
+		handlers.shutdownNow();
+	}
+
+	/**
+	 * 제목, 제목 태그, 링크, 문단이 섞인 HTML을 만든다.
+	 */
+	public static byte[] syntheticHtml(int size, long seed) {
+		Random random = new Random(seed);
+		StringBuilder html = new StringBuilder(size + 256);
+		html.append("<!DOCTYPE html><html><head><title>Synthetic page about basketball shoes</title>");
+		html.append("<style>body { font-family: sans-serif; }</style></head><body>");
+		int section = 0;
+		while (html.length() < size) {
+			html.append("<h2>Section ").append(section++).append("</h2><p>");
+			for (int i = 0; i < 40; i++) {
+				html.append("word").append(random.nextInt(1000)).append(' ');
+			}
+			html.append("<a href=\"/page/").append(random.nextInt(10000)).append("\">next</a></p>");
+		}
+		html.append("</body></html>");
+		return html.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
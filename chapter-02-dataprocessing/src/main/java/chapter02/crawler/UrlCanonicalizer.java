@@ -0,0 +1,109 @@
+package chapter02.crawler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 같은 페이지를 가리키는 URL 변형을 하나로 모은다. 예를 들어 다음 URL은 모두
+ * http://x.com/a 가 된다.
+ * 
+ * <pre>
+ * HTTP://X.com:80/a/
+ * http://x.com/./b/../a#top
+ * http://x.com/a?utm_source=serp
+ * </pre>
+ */
+public class UrlCanonicalizer {
+
+	private static final Set<String> TRACKING_PARAMS = new HashSet<>(Arrays.asList(
+			"gclid", "fbclid", "yclid", "msclkid", "dclid", "mc_cid", "mc_eid", "_ga", "_hsenc", "_hsmi"));
+
+	/**
+	 * @param url 원본 URL, 스킴이 없으면 http로 간주
+	 * @return 정규화된 URL
+	 */
+	public static String canonicalize(String url) {
+		String rest = StringUtils.substringBefore(url.trim(), "#");
+
+		String scheme = "http";
+		int schemeEnd = rest.indexOf("://");
+		if (schemeEnd > 0) {
+			scheme = rest.substring(0, schemeEnd).toLowerCase(Locale.US);
+			rest = rest.substring(schemeEnd + 3);
+		}
+
+		int authorityEnd = StringUtils.indexOfAny(rest, '/', '?');
+		if (authorityEnd < 0) {
+			authorityEnd = rest.length();
+		}
+		String authority = normalizeAuthority(scheme, rest.substring(0, authorityEnd));
+		rest = rest.substring(authorityEnd);
+
+		String path = StringUtils.substringBefore(rest, "?");
+		String query = rest.contains("?") ? StringUtils.substringAfter(rest, "?") : "";
+
+		StringBuilder result = new StringBuilder(url.length());
+		result.append(scheme).append("://").append(authority).append(normalizePath(path));
+		String normalizedQuery = normalizeQuery(query);
+		if (!normalizedQuery.isEmpty()) {
+			result.append('?').append(normalizedQuery);
+		}
+		return result.toString();
+	}
+
+	private static String normalizeAuthority(String scheme, String authority) {
+		String host = authority.toLowerCase(Locale.US);
+		if (("http".equals(scheme) && host.endsWith(":80")) || ("https".equals(scheme) && host.endsWith(":443"))) {
+			host = StringUtils.substringBeforeLast(host, ":");
+		}
+		return StringUtils.removeEnd(host, ".");
+	}
+
+	private static String normalizePath(String path) {
+		// 빈 조각, ".", ".."을 정리한다 (RFC 3986의 remove_dot_segments)
+		Deque<String> segments = new ArrayDeque<>();
+		for (String segment : StringUtils.split(path, '/')) {
+			if (".".equals(segment)) {
+				continue;
+			}
+			if ("..".equals(segment)) {
+				segments.pollLast();
+				continue;
+			}
+			segments.addLast(segment);
+		}
+		if (segments.isEmpty()) {
+			return "/";
+		}
+		StringBuilder result = new StringBuilder(path.length());
+		for (String segment : segments) {
+			result.append('/').append(segment);
+		}
+		return result.toString();
+	}
+
+	private static String normalizeQuery(String query) {
+		if (query.isEmpty()) {
+			return query;
+		}
+		List<String> params = new ArrayList<>();
+		for (String param : StringUtils.split(query, '&')) {
+			String name = StringUtils.substringBefore(param, "=").toLowerCase(Locale.US);
+			if (name.isEmpty() || name.startsWith("utm_") || TRACKING_PARAMS.contains(name)) {
+				continue;
+			}
+			params.add(param);
+		}
+		Collections.sort(params);
+		return StringUtils.join(params, '&');
+	}
+}
@@ -0,0 +1,54 @@
+package chapter02.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+
+/**
+ * 블룸 필터를 사용한 URL 중복 제거. 메모리는 예상 URL 수와 오탐률로 고정되며
+ * (1000만 개, 1%일 때 약 12MB) URL 문자열 자체는 저장하지 않는다.
+ * 오탐이 발생하면 새 URL을 이미 본 것으로 판단하지만, 본 URL을 놓치는 일은 없다.
+ */
+public class UrlDeduplicator {
+
+	private static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+
+	private final BloomFilter<CharSequence> filter;
+
+	public UrlDeduplicator(long expectedUrls, double falsePositiveRate) {
+		this(BloomFilter.create(FUNNEL, expectedUrls, falsePositiveRate));
+	}
+
+	private UrlDeduplicator(BloomFilter<CharSequence> filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * @param canonicalUrl {@link UrlCanonicalizer}로 정규화된 URL
+	 * @return 처음 보는 URL이면 true
+	 */
+	public synchronized boolean firstSeen(String canonicalUrl) {
+		return filter.put(canonicalUrl);
+	}
+
+	public synchronized boolean mightContain(String canonicalUrl) {
+		return filter.mightContain(canonicalUrl);
+	}
+
+	public synchronized double expectedFalsePositiveRate() {
+		return filter.expectedFpp();
+	}
+
+	public synchronized void writeTo(OutputStream out) throws IOException {
+		filter.writeTo(out);
+	}
+
+	public static UrlDeduplicator readFrom(InputStream in) throws IOException {
+		return new UrlDeduplicator(BloomFilter.readFrom(in, FUNNEL));
+	}
+}
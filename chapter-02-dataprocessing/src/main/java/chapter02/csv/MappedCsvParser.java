@@ -0,0 +1,372 @@
+package chapter02.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 메모리 맵 파일을 바이트 단위로 직접 읽는 CSV/TSV 파서. 레코드마다 필드의 시작, 끝 위치만
+ * 기록하고 문자열은 필요할 때만 만든다. 숫자 필드는 바이트에서 바로 정수로 바꾼다.
+ * RFC4180의 큰따옴표 규칙(필드 안의 구분자, 줄바꿈, "" 이스케이프)을 지원한다.
+ */
+public class MappedCsvParser {
+
+	private static final int DEFAULT_WINDOW = 1 << 30;
+
+	private final byte delimiter;
+	private final int window;
+
+	public MappedCsvParser(char delimiter) {
+		this(delimiter, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * @param delimiter 구분자 (',' 또는 '\t')
+	 * @param window 한 번에 매핑할 최대 바이트 수, 2GB가 넘는 파일은 여러 번 나눠서 매핑한다
+	 */
+	public MappedCsvParser(char delimiter, int window) {
+		this.delimiter = (byte) delimiter;
+		this.window = window;
+	}
+
+	/**
+	 * 파일 전체를 읽어 레코드마다 handler를 호출한다. handler에 넘기는 {@link Record} 객체는
+	 * 재사용되므로 호출이 끝난 뒤에 보관하면 안 된다.
+	 *
+	 * @param header 첫 줄이 헤더면 true, 헤더는 handler에 넘기지 않고 {@link Record#header()}로 제공한다
+	 * @throws IOException 파일 끝까지 닫히지 않은 따옴표 필드가 있을 때
+	 */
+	public void parse(Path file, boolean header, RecordHandler handler) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			Record record = new Record();
+			boolean needHeader = header;
+			while (position < size) {
+				long length = Math.min(window, size - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				boolean last = position + length == size;
+				if (needHeader) {
+					int end = parseHeader(buffer, (int) length, last, record);
+					if (end < 0 && last) {
+						throw new IOException("unterminated quoted field at offset " + position);
+					}
+					if (end < 0) {
+						throw new IOException("header does not fit into a single mapping window");
+					}
+					needHeader = false;
+					position = position + end;
+					continue;
+				}
+				int consumed = parse(buffer, 0, (int) length, last, record, handler);
+				// 마지막 구간에서 남은 바이트는 닫히지 않은 따옴표 필드뿐이다
+				if (last && consumed < length) {
+					throw new IOException("unterminated quoted field at offset " + (position + consumed));
+				}
+				if (consumed == 0) {
+					throw new IOException("record at offset " + position + " is larger than the mapping window");
+				}
+				position = position + consumed;
+			}
+		}
+	}
+
+	/**
+	 * buffer의 [from, to) 구간에서 완전한 레코드만 처리한다.
+	 *
+	 * @param last to가 입력의 끝이면 true, 이 경우 줄바꿈 없이 끝나는 마지막 레코드도 처리한다
+	 * @param record 재사용할 레코드 객체 (헤더 정보를 담고 있을 수 있음)
+	 * @return 처리한 마지막 레코드 다음 위치 (from 기준 상대 위치)
+	 */
+	public int parse(ByteBuffer buffer, int from, int to, boolean last, Record record, RecordHandler handler) {
+		int position = from;
+		while (position < to) {
+			int end = parseRecord(buffer, position, to, last, record);
+			if (end < 0) {
+				break;
+			}
+			position = end;
+			if (!record.isBlank()) {
+				handler.record(record);
+			}
+		}
+		return position - from;
+	}
+
+	/**
+	 * buffer의 처음 레코드를 헤더로 읽어 record에 저장한다.
+	 *
+	 * @return 헤더 다음 위치, 헤더가 구간 안에서 끝나지 않으면 -1
+	 */
+	int parseHeader(ByteBuffer buffer, int to, boolean last, Record record) {
+		int end = parseRecord(buffer, 0, to, last, record);
+		if (end >= 0) {
+			record.setHeader();
+		}
+		return end;
+	}
+
+	/**
+	 * @return 다음 레코드 시작 위치, 레코드가 구간 안에서 끝나지 않으면 -1
+	 */
+	private int parseRecord(ByteBuffer buffer, int from, int to, boolean last, Record record) {
+		record.reset(buffer);
+		int i = from;
+		int fieldStart = from;
+		boolean quoted = false;
+		boolean escaped = false;
+		boolean inQuotes = false;
+
+		while (i < to) {
+			byte b = buffer.get(i);
+			if (inQuotes) {
+				if (b == '"') {
+					if (i + 1 < to && buffer.get(i + 1) == '"') {
+						escaped = true;
+						i = i + 2;
+						continue;
+					}
+					if (i + 1 >= to && !last) {
+						return -1;
+					}
+					inQuotes = false;
+				}
+				i++;
+				continue;
+			}
+			if (b == '"' && i == fieldStart) {
+				inQuotes = true;
+				quoted = true;
+				i++;
+				continue;
+			}
+			if (b == delimiter) {
+				record.add(fieldStart, i, quoted, escaped);
+				fieldStart = i + 1;
+				quoted = false;
+				escaped = false;
+				i++;
+				continue;
+			}
+			if (b == '\n') {
+				int fieldEnd = i > fieldStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+				record.add(fieldStart, fieldEnd, quoted, escaped);
+				return i + 1;
+			}
+			i++;
+		}
+
+		if (!last || inQuotes) {
+			return -1;
+		}
+		int fieldEnd = i > fieldStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+		record.add(fieldStart, fieldEnd, quoted, escaped);
+		return i;
+	}
+
+	public interface RecordHandler {
+		void record(Record record);
+	}
+
+	/**
+	 * 현재 레코드의 필드 위치 정보. 파서가 재사용하므로 handler 밖으로 내보내면 안 된다.
+	 */
+	public static class Record {
+
+		private ByteBuffer buffer;
+		private int[] starts = new int[16];
+		private int[] ends = new int[16];
+		private boolean[] quoted = new boolean[16];
+		private boolean[] escaped = new boolean[16];
+		private int size = 0;
+		private byte[] scratch = new byte[256];
+		private List<String> header = null;
+
+		public Record() {
+		}
+
+		/**
+		 * 다른 레코드에서 읽은 헤더를 공유하는 레코드. 파일을 나눠서 병렬로 읽을 때 사용한다.
+		 */
+		Record(List<String> header) {
+			this.header = header;
+		}
+
+		void reset(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.size = 0;
+		}
+
+		void add(int start, int end, boolean isQuoted, boolean isEscaped) {
+			if (size == starts.length) {
+				int capacity = size * 2;
+				starts = Arrays.copyOf(starts, capacity);
+				ends = Arrays.copyOf(ends, capacity);
+				quoted = Arrays.copyOf(quoted, capacity);
+				escaped = Arrays.copyOf(escaped, capacity);
+			}
+			// 따옴표로 감싼 필드는 안쪽만 가리키게 한다
+			starts[size] = isQuoted ? start + 1 : start;
+			ends[size] = isQuoted ? Math.max(start + 1, end - 1) : end;
+			quoted[size] = isQuoted;
+			escaped[size] = isEscaped;
+			size++;
+		}
+
+		void setHeader() {
+			List<String> names = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				names.add(getString(i).trim());
+			}
+			this.header = names;
+		}
+
+		boolean isBlank() {
+			return size == 1 && starts[0] == ends[0];
+		}
+
+		/**
+		 * @return 헤더의 컬럼 이름들, 헤더 없이 읽었으면 null
+		 */
+		public List<String> header() {
+			return header;
+		}
+
+		/**
+		 * @return 헤더에서 컬럼의 위치
+		 * @throws IllegalArgumentException 컬럼이 없을 때
+		 */
+		public int columnIndex(String name) {
+			int index = header == null ? -1 : header.indexOf(name);
+			if (index < 0) {
+				throw new IllegalArgumentException("no column " + name + " in header " + header);
+			}
+			return index;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int length(int field) {
+			return ends[field] - starts[field];
+		}
+
+		public boolean isEmpty(int field) {
+			return field >= size || starts[field] == ends[field];
+		}
+
+		public String getString(int field) {
+			int length = ends[field] - starts[field];
+			if (length > scratch.length) {
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			}
+			int n = 0;
+			for (int i = starts[field]; i < ends[field]; i++) {
+				byte b = buffer.get(i);
+				scratch[n++] = b;
+				if (escaped[field] && b == '"') {
+					// "" 이스케이프는 따옴표 하나로
+					i++;
+				}
+			}
+			return new String(scratch, 0, n, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * 필드를 정수로 읽는다. 앞뒤 공백, 부호, 통화 기호 '$' 하나, 자릿수 구분 쉼표("$53,947")는
+		 * 허용하고 그 밖의 문자("abc12", "1.5")가 있으면 예외를 던진다.
+		 *
+		 * @throws NumberFormatException 정수 형식이 아니거나 범위를 넘을 때
+		 */
+		public int getInt(int field) {
+			long value = getLong(field);
+			if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("value out of int range: " + getString(field));
+			}
+			return (int) value;
+		}
+
+		/**
+		 * {@link #getInt(int)}과 같은 형식을 long으로 읽는다.
+		 */
+		public long getLong(int field) {
+			int i = starts[field];
+			int end = ends[field];
+			while (i < end && buffer.get(i) == ' ') {
+				i++;
+			}
+			while (end > i && buffer.get(end - 1) == ' ') {
+				end--;
+			}
+			boolean negative = false;
+			if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+				negative = buffer.get(i) == '-';
+				i++;
+			}
+			if (i < end && buffer.get(i) == '$') {
+				i++;
+			}
+			if (i >= end || !isDigit(buffer.get(i))) {
+				throw new NumberFormatException("not a number: " + getString(field));
+			}
+			// 음수 쪽으로 쌓아야 Long.MIN_VALUE까지 넘치지 않고 읽을 수 있다
+			long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			long value = 0;
+			for (; i < end; i++) {
+				byte b = buffer.get(i);
+				if (b == ',' && i + 1 < end && isDigit(buffer.get(i - 1)) && isDigit(buffer.get(i + 1))) {
+					continue;
+				}
+				if (!isDigit(b)) {
+					throw new NumberFormatException("not a number: " + getString(field));
+				}
+				if (value < limit / 10 || value * 10 < limit + (b - '0')) {
+					throw new NumberFormatException("value out of long range: " + getString(field));
+				}
+				value = value * 10 - (b - '0');
+			}
+			return negative ? value : -value;
+		}
+
+		/**
+		 * 필드 내용이 주어진 UTF-8 바이트와 같은지 문자열을 만들지 않고 비교한다.
+		 */
+		public boolean contentEquals(int field, byte[] value) {
+			if (escaped[field] || ends[field] - starts[field] != value.length) {
+				return escaped[field] && getString(field).equals(new String(value, StandardCharsets.UTF_8));
+			}
+			for (int i = 0; i < value.length; i++) {
+				if (buffer.get(starts[field] + i) != value[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * 필드 내용의 해시. 사전 인코딩처럼 문자열 없이 값을 찾을 때 사용한다.
+		 */
+		public int contentHash(int field) {
+			if (escaped[field]) {
+				return Arrays.hashCode(getString(field).getBytes(StandardCharsets.UTF_8));
+			}
+			int hash = 1;
+			for (int i = starts[field]; i < ends[field]; i++) {
+				hash = 31 * hash + buffer.get(i);
+			}
+			return hash;
+		}
+
+		private static boolean isDigit(byte b) {
+			return b >= '0' && b <= '9';
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package chapter02.csv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.Validate;
+
+import chapter02.csv.MappedCsvParser.Record;
+
+/**
+ * 파일을 레코드 경계에 맞춘 바이트 구간으로 나누고 구간마다 다른 스레드에서 파싱한다.
+ * 따옴표 안의 줄바꿈은 레코드 경계가 아니므로 먼저 구간별 따옴표 개수를 병렬로 세고,
+ * 앞 구간들의 홀짝으로 각 구간이 따옴표 안에서 시작하는지 알아낸 다음 경계를 정한다.
+ * RFC4180을 따르는 파일, 즉 따옴표가 따옴표로 감싼 필드에만 나타나는 파일을 가정한다.
+ */
+public class ParallelCsvReader {
+
+	private static final int SEARCH_WINDOW = 1 << 20;
+
+	private final MappedCsvParser parser;
+	private final int threads;
+	private final int chunkSize;
+
+	public ParallelCsvReader(char delimiter) {
+		this(delimiter, Runtime.getRuntime().availableProcessors(), 64 << 20);
+	}
+
+	/**
+	 * @param delimiter 구분자
+	 * @param threads 파싱 스레드 수
+	 * @param chunkSize 한 스레드가 맡는 구간의 대략적인 크기 (바이트)
+	 */
+	public ParallelCsvReader(char delimiter, int threads, int chunkSize) {
+		Validate.isTrue(threads > 0, "threads must be positive");
+		Validate.isTrue(chunkSize > 0, "chunkSize must be positive");
+		this.parser = new MappedCsvParser(delimiter);
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * 레코드마다 mapper를 적용하고 결과를 파일 순서대로 합친다. mapper는 여러 스레드에서
+	 * 동시에 호출된다.
+	 */
+	public <T> List<T> read(Path file, Function<Record, T> mapper) throws IOException {
+		List<List<T>> chunks = readChunks(file, ArrayList::new, (list, record) -> list.add(mapper.apply(record)));
+		int size = 0;
+		for (List<T> chunk : chunks) {
+			size = size + chunk.size();
+		}
+		List<T> result = new ArrayList<>(size);
+		for (List<T> chunk : chunks) {
+			result.addAll(chunk);
+		}
+		return result;
+	}
+
+	/**
+	 * 구간마다 supplier로 누적 객체를 만들고 그 구간의 레코드를 accumulator로 모은다.
+	 * 열 단위 버퍼처럼 리스트가 아닌 형태로 모을 때 사용한다.
+	 *
+	 * @return 구간별 누적 객체, 파일 순서대로
+	 * @throws IOException 구간 끝까지 레코드를 다 읽지 못했을 때 (닫히지 않은 따옴표 등)
+	 */
+	public <A> List<A> readChunks(Path file, Supplier<A> supplier, BiConsumer<A, Record> accumulator)
+			throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			Record header = new Record();
+			long dataStart = readHeader(channel, size, header);
+			long[] bounds = split(channel, executor, dataStart, size);
+
+			List<Future<A>> futures = new ArrayList<>();
+			for (int i = 0; i + 1 < bounds.length; i++) {
+				long from = bounds[i];
+				long to = bounds[i + 1];
+				if (from >= to) {
+					continue;
+				}
+				Validate.isTrue(to - from <= Integer.MAX_VALUE, "record range too large: %d bytes", to - from);
+				futures.add(executor.submit(() -> {
+					A state = supplier.get();
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+					Record record = new Record(header.header());
+					int consumed = parser.parse(buffer, 0, (int) (to - from), true, record,
+							r -> accumulator.accept(state, r));
+					// 구간은 레코드 경계에서 끝나므로 남은 바이트가 있으면 그 뒤 레코드가 버려진 것이다
+					if (consumed != to - from) {
+						throw new IOException("unterminated or malformed record in chunk at offset " + from
+								+ " (stopped at offset " + (from + consumed) + ")");
+					}
+					return state;
+				}));
+			}
+
+			List<A> result = new ArrayList<>(futures.size());
+			for (Future<A> future : futures) {
+				result.add(await(future));
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private long readHeader(FileChannel channel, long size, Record header) throws IOException {
+		long length = Math.min(size, SEARCH_WINDOW);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		int end = parser.parseHeader(buffer, (int) length, length == size, header);
+		if (end < 0 && length == size) {
+			throw new IOException("unterminated quoted field at offset 0");
+		}
+		if (end < 0) {
+			throw new IOException("header does not fit into " + SEARCH_WINDOW + " bytes");
+		}
+		return end;
+	}
+
+	/**
+	 * @return 레코드 경계에 맞춘 구간 시작 위치들, 마지막 원소는 파일 크기
+	 */
+	private long[] split(FileChannel channel, ExecutorService executor, long dataStart, long size)
+			throws IOException {
+		int chunks = (int) Math.max(1, (size - dataStart + chunkSize - 1) / chunkSize);
+		long[] nominal = new long[chunks + 1];
+		for (int i = 0; i < chunks; i++) {
+			nominal[i] = dataStart + (long) i * chunkSize;
+		}
+		nominal[chunks] = size;
+
+		// 1단계: 구간별 따옴표 개수의 홀짝
+		List<Future<Boolean>> parities = new ArrayList<>();
+		for (int i = 0; i < chunks; i++) {
+			long from = nominal[i];
+			long to = nominal[i + 1];
+			parities.add(executor.submit(() -> oddQuotes(channel, from, to)));
+		}
+
+		// 2단계: 구간 시작이 따옴표 안인지 알았으니 그 뒤 첫 줄바꿈을 찾는다
+		List<Future<Long>> starts = new ArrayList<>();
+		boolean inQuotes = false;
+		for (int i = 1; i < chunks; i++) {
+			inQuotes = inQuotes ^ await(parities.get(i - 1));
+			long from = nominal[i];
+			boolean quoted = inQuotes;
+			starts.add(executor.submit(() -> nextRecordStart(channel, from, quoted, size)));
+		}
+
+		long[] bounds = new long[chunks + 1];
+		bounds[0] = dataStart;
+		for (int i = 1; i < chunks; i++) {
+			bounds[i] = Math.max(bounds[i - 1], await(starts.get(i - 1)));
+		}
+		bounds[chunks] = size;
+		return bounds;
+	}
+
+	private static boolean oddQuotes(FileChannel channel, long from, long to) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+		int count = 0;
+		int length = (int) (to - from);
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(i) == '"') {
+				count++;
+			}
+		}
+		return (count & 1) == 1;
+	}
+
+	private static long nextRecordStart(FileChannel channel, long from, boolean inQuotes, long size)
+			throws IOException {
+		long position = from;
+		boolean quoted = inQuotes;
+		while (position < size) {
+			int length = (int) Math.min(SEARCH_WINDOW, size - position);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			for (int i = 0; i < length; i++) {
+				byte b = buffer.get(i);
+				if (b == '"') {
+					quoted = !quoted;
+				} else if (b == '\n' && !quoted) {
+					return position + i + 1;
+				}
+			}
+			position = position + length;
+		}
+		return size;
+	}
+
+	private static <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while reading", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
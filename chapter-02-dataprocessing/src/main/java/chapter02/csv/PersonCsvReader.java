@@ -0,0 +1,172 @@
+package chapter02.csv;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import chapter02.Person;
+import chapter02.csv.MappedCsvParser.Record;
+
+/**
+ * 사람 목록 CSV/TSV(name, email, country, salary, experience)를 메모리 맵으로 읽는다.
+ * 컬럼 위치는 헤더에서 한 번만 찾고, "$53947" 같은 통화 기호가 붙은 급여도 바이트에서 바로
+ * 정수로 읽는다.
+ */
+public class PersonCsvReader {
+
+	private final char delimiter;
+	private final MappedCsvParser parser;
+
+	/**
+	 * @param delimiter 구분자, CSV는 ',' TSV는 '\t'
+	 */
+	public PersonCsvReader(char delimiter) {
+		this.delimiter = delimiter;
+		this.parser = new MappedCsvParser(delimiter);
+	}
+
+	public static PersonCsvReader csv() {
+		return new PersonCsvReader(',');
+	}
+
+	public static PersonCsvReader tsv() {
+		return new PersonCsvReader('\t');
+	}
+
+	public List<Person> read(Path file) throws IOException {
+		List<Person> result = new ArrayList<>();
+		forEach(file, result::add);
+		return result;
+	}
+
+	/**
+	 * 레코드마다 Person을 만들어 consumer에 넘긴다. 전체 목록을 메모리에 올리지 않는다.
+	 */
+	public void forEach(Path file, Consumer<Person> consumer) throws IOException {
+		Columns columns = new Columns();
+		parser.parse(file, true, record -> consumer.accept(columns.person(record)));
+	}
+
+	/**
+	 * 파일을 레코드 경계에 맞춰 나누고 코어마다 한 구간씩 파싱한 다음 파일 순서대로 합친다.
+	 *
+	 * @param threads 파싱 스레드 수
+	 */
+	public List<Person> readParallel(Path file, int threads) throws IOException {
+		ParallelCsvReader reader = new ParallelCsvReader(delimiter, threads, chunkSize(file, threads));
+		List<PersonChunk> chunks = reader.readChunks(file, PersonChunk::new, PersonChunk::add);
+		int size = 0;
+		for (PersonChunk chunk : chunks) {
+			size = size + chunk.people.size();
+		}
+		List<Person> result = new ArrayList<>(size);
+		for (PersonChunk chunk : chunks) {
+			result.addAll(chunk.people);
+		}
+		return result;
+	}
+
+	/**
+	 * 숫자 컬럼만 기본형 배열로 읽는다. 문자열은 하나도 만들지 않는다.
+	 *
+	 * @return [0] 급여, [1] 경력
+	 */
+	public int[][] readNumeric(Path file) throws IOException {
+		NumericChunk chunk = new NumericChunk();
+		parser.parse(file, true, chunk::add);
+		return new int[][] { Arrays.copyOf(chunk.salary, chunk.size), Arrays.copyOf(chunk.experience, chunk.size) };
+	}
+
+	/**
+	 * {@link #readNumeric(Path)}의 병렬 버전. 구간별 배열을 파일 순서대로 이어 붙인다.
+	 *
+	 * @return [0] 급여, [1] 경력
+	 */
+	public int[][] readNumericParallel(Path file, int threads) throws IOException {
+		ParallelCsvReader reader = new ParallelCsvReader(delimiter, threads, chunkSize(file, threads));
+		List<NumericChunk> chunks = reader.readChunks(file, NumericChunk::new, NumericChunk::add);
+		int size = 0;
+		for (NumericChunk chunk : chunks) {
+			size = size + chunk.size;
+		}
+		int[][] result = { new int[size], new int[size] };
+		int offset = 0;
+		for (NumericChunk chunk : chunks) {
+			System.arraycopy(chunk.salary, 0, result[0], offset, chunk.size);
+			System.arraycopy(chunk.experience, 0, result[1], offset, chunk.size);
+			offset = offset + chunk.size;
+		}
+		return result;
+	}
+
+	/**
+	 * 스레드마다 몇 개의 구간을 맡도록 나눠서 구간별 처리 시간 차이를 흡수한다.
+	 * 구간 하나가 너무 커지지 않도록 최대 64MB로 제한한다.
+	 */
+	private static int chunkSize(Path file, int threads) throws IOException {
+		long size = Files.size(file);
+		long chunk = size / (threads * 4L) + 1;
+		return (int) Math.min(64 << 20, Math.max(1 << 16, chunk));
+	}
+
+	private static class PersonChunk {
+		private final Columns columns = new Columns();
+		private final List<Person> people = new ArrayList<>();
+
+		void add(Record record) {
+			people.add(columns.person(record));
+		}
+	}
+
+	private static class NumericChunk {
+		private final Columns columns = new Columns();
+		private int[] salary = new int[1024];
+		private int[] experience = new int[1024];
+		private int size = 0;
+
+		void add(Record record) {
+			columns.resolve(record);
+			if (size == salary.length) {
+				salary = Arrays.copyOf(salary, size * 2);
+				experience = Arrays.copyOf(experience, size * 2);
+			}
+			salary[size] = record.getInt(columns.salary);
+			experience[size] = record.getInt(columns.experience);
+			size++;
+		}
+	}
+
+	/**
+	 * 헤더 이름에 대응하는 필드 위치. 첫 레코드에서 한 번만 찾는다.
+	 */
+	private static class Columns {
+		private boolean resolved = false;
+		private int name;
+		private int email;
+		private int country;
+		private int salary;
+		private int experience;
+
+		void resolve(Record record) {
+			if (resolved) {
+				return;
+			}
+			name = record.columnIndex("name");
+			email = record.columnIndex("email");
+			country = record.columnIndex("country");
+			salary = record.columnIndex("salary");
+			experience = record.columnIndex("experience");
+			resolved = true;
+		}
+
+		Person person(Record record) {
+			resolve(record);
+			return new Person(record.getString(name), record.getString(email), record.getString(country),
+					record.getInt(salary), record.getInt(experience));
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package chapter02.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * 텍스트 파일의 모든 줄에 함수를 적용해서 다른 파일에 쓴다. 채널에서 큰 블록을 읽어 마지막
+ * 줄바꿈에서 자르고, 블록마다 다른 스레드에서 디코딩 → 변환 → 인코딩한 다음 원래 순서대로
+ * 다이렉트 버퍼를 통해 쓴다. 동시에 처리 중인 블록 수를 제한하므로 파일 크기와 상관없이
+ * 메모리 사용량이 일정하다.
+ *
+ * 블록을 바이트 단위로 '\n'에서 자르므로 UTF-8이나 ISO-8859-1처럼 줄바꿈이 1바이트인
+ * 문자 집합만 지원한다.
+ */
+public class LineTransformer {
+
+	private final Charset charset;
+	private final int threads;
+	private final int blockSize;
+
+	public LineTransformer() {
+		this(StandardCharsets.UTF_8, Runtime.getRuntime().availableProcessors(), 8 << 20);
+	}
+
+	/**
+	 * @param charset 입력과 출력의 문자 집합
+	 * @param threads 변환 스레드 수
+	 * @param blockSize 한 번에 읽는 블록 크기, 출력 버퍼도 같은 크기의 다이렉트 버퍼를 쓴다
+	 */
+	public LineTransformer(Charset charset, int threads, int blockSize) {
+		Validate.isTrue(Arrays.equals("\n".getBytes(charset), new byte[] { '\n' }),
+				"charset %s does not encode a newline as a single byte", charset);
+		Validate.isTrue(threads > 0, "threads must be positive");
+		Validate.isTrue(blockSize > 0, "blockSize must be positive");
+		this.charset = charset;
+		this.threads = threads;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * input의 각 줄(줄 끝의 \r, \n 제외)에 function을 적용해서 output에 한 줄씩 쓴다.
+	 * function은 여러 스레드에서 동시에 호출된다.
+	 */
+	public Stats transform(Path input, Path output, Function<String, String> function) throws IOException {
+		long start = System.nanoTime();
+		long bytesRead = 0;
+		long bytesWritten = 0;
+		long lines = 0;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Deque<Future<Block>> pending = new ArrayDeque<>();
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer readBuffer = ByteBuffer.allocateDirect(blockSize);
+			ByteBuffer writeBuffer = ByteBuffer.allocateDirect(blockSize);
+			byte[] carry = new byte[0];
+
+			while (true) {
+				readBuffer.clear();
+				int n = in.read(readBuffer);
+				if (n < 0) {
+					break;
+				}
+				bytesRead = bytesRead + n;
+				readBuffer.flip();
+
+				// 이전 블록에서 남은 줄 조각 뒤에 새 블록을 붙이고 마지막 줄바꿈에서 자른다
+				byte[] block = new byte[carry.length + readBuffer.remaining()];
+				System.arraycopy(carry, 0, block, 0, carry.length);
+				readBuffer.get(block, carry.length, readBuffer.remaining());
+				int end = lastNewline(block);
+				if (end < 0) {
+					carry = block;
+					continue;
+				}
+				carry = Arrays.copyOfRange(block, end + 1, block.length);
+				int length = end + 1;
+				pending.add(executor.submit(() -> apply(block, length, function)));
+
+				// 처리 중인 블록이 너무 많으면 앞의 블록부터 쓴다
+				while (pending.size() > threads * 2) {
+					Block done = await(pending.poll());
+					bytesWritten = bytesWritten + write(out, writeBuffer, done.bytes);
+					lines = lines + done.lines;
+				}
+			}
+			if (carry.length > 0) {
+				byte[] last = carry;
+				pending.add(executor.submit(() -> apply(last, last.length, function)));
+			}
+			while (!pending.isEmpty()) {
+				Block done = await(pending.poll());
+				bytesWritten = bytesWritten + write(out, writeBuffer, done.bytes);
+				lines = lines + done.lines;
+			}
+			flush(out, writeBuffer);
+		} finally {
+			executor.shutdownNow();
+		}
+		return new Stats(bytesRead, bytesWritten, lines, System.nanoTime() - start);
+	}
+
+	private Block apply(byte[] block, int length, Function<String, String> function) {
+		String text = new String(block, 0, length, charset);
+		StringBuilder sb = new StringBuilder(text.length() + text.length() / 8);
+		int lines = 0;
+		int from = 0;
+		while (from < text.length()) {
+			int newline = text.indexOf('\n', from);
+			int next = newline < 0 ? text.length() : newline + 1;
+			int to = newline < 0 ? text.length() : newline;
+			if (to > from && text.charAt(to - 1) == '\r') {
+				to--;
+			}
+			sb.append(function.apply(text.substring(from, to))).append('\n');
+			lines++;
+			from = next;
+		}
+		return new Block(sb.toString().getBytes(charset), lines);
+	}
+
+	private static int lastNewline(byte[] block) {
+		for (int i = block.length - 1; i >= 0; i--) {
+			if (block[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int write(FileChannel out, ByteBuffer buffer, byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining()) {
+				flush(out, buffer);
+			}
+			int n = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, n);
+			offset = offset + n;
+		}
+		return bytes.length;
+	}
+
+	private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static Block await(Future<Block> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while transforming", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static class Block {
+		private final byte[] bytes;
+		private final int lines;
+
+		Block(byte[] bytes, int lines) {
+			this.bytes = bytes;
+			this.lines = lines;
+		}
+	}
+
+	public static class Stats {
+
+		private final long bytesRead;
+		private final long bytesWritten;
+		private final long lines;
+		private final long elapsedNanos;
+
+		public Stats(long bytesRead, long bytesWritten, long lines, long elapsedNanos) {
+			this.bytesRead = bytesRead;
+			this.bytesWritten = bytesWritten;
+			this.lines = lines;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public long getBytesRead() {
+			return bytesRead;
+		}
+
+		public long getBytesWritten() {
+			return bytesWritten;
+		}
+
+		public long getLines() {
+			return lines;
+		}
+
+		public double getElapsedSeconds() {
+			return elapsedNanos / 1e9;
+		}
+
+		/**
+		 * @return 입력 기준 처리 속도 (MB/s)
+		 */
+		public double getMegabytesPerSecond() {
+			return elapsedNanos == 0 ? 0.0 : bytesRead / 1024.0 / 1024.0 / getElapsedSeconds();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Stats [lines=%d, read=%d bytes, written=%d bytes, elapsed=%.2f s, %.1f MB/s]",
+					lines, bytesRead, bytesWritten, getElapsedSeconds(), getMegabytesPerSecond());
+		}
+	}
+}
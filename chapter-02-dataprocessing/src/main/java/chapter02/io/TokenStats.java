@@ -0,0 +1,196 @@
+package chapter02.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * 토큰 수, 평균/최대 길이, 길이 분포를 센다. {@link Tokenizer}의 핸들러로 쓰이며 토큰마다 길이만
+ * 계산하므로 토큰당 할당이 없다. 길이는 String.length()와 같은 UTF-16 문자 수이다.
+ * 스레드 안전하지 않으며, 여러 스레드에서 센 결과는 {@link #merge(TokenStats)}로 합친다.
+ */
+public class TokenStats implements Tokenizer.ByteTokenHandler, Tokenizer.CharTokenHandler {
+
+	/**
+	 * 길이 분포의 구간 수. 마지막 구간에는 그 이상 길이가 모두 들어간다.
+	 */
+	public static final int HISTOGRAM_SIZE = 64;
+
+	private static final int TAIL = 64 * 1024;
+
+	private final long[] histogram = new long[HISTOGRAM_SIZE];
+	private long count = 0;
+	private long totalLength = 0;
+	private int maxLength = 0;
+
+	/**
+	 * 파일을 한 번에 매핑하지 않고 64MB 블록으로 나눠 모든 코어에서 센다.
+	 */
+	public static TokenStats compute(Path path) throws IOException {
+		return compute(path, Runtime.getRuntime().availableProcessors(), 64 << 20);
+	}
+
+	/**
+	 * 파일을 blockSize 블록으로 나누고 블록마다 메모리 맵으로 토큰을 센다. 각 블록은 그 블록에서
+	 * 시작하는 토큰만 세므로 블록 경계에 걸친 토큰도 한 번만 세어진다.
+	 *
+	 * @param threads 스레드 수
+	 * @param blockSize 블록 크기(바이트)
+	 */
+	public static TokenStats compute(Path path, int threads, int blockSize) throws IOException {
+		Validate.isTrue(threads > 0, "threads must be positive");
+		Validate.isTrue(blockSize > 0 && blockSize <= Integer.MAX_VALUE / 2, "invalid blockSize: %d", blockSize);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			TokenStats result = new TokenStats();
+			Deque<Future<TokenStats>> pending = new ArrayDeque<>();
+			for (long start = 0; start < size; start = start + blockSize) {
+				long from = start;
+				long to = Math.min(size, start + blockSize);
+				pending.add(executor.submit(() -> scan(channel, size, from, to)));
+
+				// 처리 중인 블록 수를 제한해서 블록이 많아도 대기열이 커지지 않게 한다
+				while (pending.size() > threads * 2) {
+					result.merge(await(pending.poll()));
+				}
+			}
+			while (!pending.isEmpty()) {
+				result.merge(await(pending.poll()));
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public static TokenStats compute(CharSequence text) {
+		TokenStats stats = new TokenStats();
+		Tokenizer.tokenize(text, 0, text.length(), stats);
+		return stats;
+	}
+
+	/**
+	 * [start, end)에서 시작하는 토큰을 센다. 블록 앞에 걸친 토큰은 건너뛰고, 끝에 걸친 토큰은
+	 * 끝날 때까지 읽는다. 토큰이 매핑한 꼬리보다 길면 꼬리를 늘려서 다시 매핑한다.
+	 */
+	private static TokenStats scan(FileChannel channel, long size, long start, long end) throws IOException {
+		TokenStats stats = new TokenStats();
+		long mapStart = start == 0 ? 0 : start - 1;
+		long tail = TAIL;
+		while (true) {
+			long mapEnd = Math.min(size, end + tail);
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+			int capacity = buffer.capacity();
+			int from = (int) (start - mapStart);
+			int to = (int) (end - mapStart);
+
+			// 이전 블록에서 시작한 토큰은 그 블록이 센다
+			while (from > 0 && from < to && !Tokenizer.isDelimiter(buffer.get(from - 1))) {
+				from++;
+			}
+			if (from >= to) {
+				return stats;
+			}
+
+			if (!Tokenizer.isDelimiter(buffer.get(to - 1))) {
+				while (to < capacity && !Tokenizer.isDelimiter(buffer.get(to))) {
+					to++;
+				}
+				if (to == capacity && mapEnd < size) {
+					tail = tail * 4;
+					continue;
+				}
+			}
+			Tokenizer.tokenize(buffer, from, to, stats);
+			return stats;
+		}
+	}
+
+	@Override
+	public void token(ByteBuffer text, int start, int end) {
+		add(Tokenizer.charLength(text, start, end));
+	}
+
+	@Override
+	public void token(CharSequence text, int start, int end) {
+		add(end - start);
+	}
+
+	public void add(int length) {
+		count++;
+		totalLength = totalLength + length;
+		if (length > maxLength) {
+			maxLength = length;
+		}
+		histogram[Math.min(length, HISTOGRAM_SIZE - 1)]++;
+	}
+
+	public void merge(TokenStats other) {
+		count = count + other.count;
+		totalLength = totalLength + other.totalLength;
+		maxLength = Math.max(maxLength, other.maxLength);
+		for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+			histogram[i] = histogram[i] + other.histogram[i];
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	public double getMeanLength() {
+		return count == 0 ? 0.0 : (double) totalLength / count;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * @return 길이별 토큰 수, 인덱스가 길이이다. 마지막 구간은 {@link #HISTOGRAM_SIZE} - 1 이상
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+
+	@Override
+	public String toString() {
+		int last = Math.min(maxLength, HISTOGRAM_SIZE - 1);
+		return String.format("TokenStats [count=%d, meanLength=%.3f, maxLength=%d, histogram=%s]", count,
+				getMeanLength(), maxLength, Arrays.toString(Arrays.copyOf(histogram, last + 1)));
+	}
+
+	private static TokenStats await(Future<TokenStats> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while counting tokens", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+}
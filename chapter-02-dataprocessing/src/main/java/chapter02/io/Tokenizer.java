@@ -0,0 +1,96 @@
+package chapter02.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 공백 문자(스페이스, 탭, 줄바꿈 등 ASCII 공백)로 구분된 토큰의 경계를 찾는다. 토큰마다 String이나
+ * 배열을 만들지 않고 원본 버퍼 안의 [start, end) 위치만 핸들러에 넘긴다. 바이트 버퍼는 UTF-8
+ * (또는 ASCII)로 가정하며, 멀티바이트 문자의 바이트는 모두 0x80 이상이므로 공백과 섞이지 않는다.
+ * 연속된 공백은 빈 토큰을 만들지 않는다.
+ */
+public final class Tokenizer {
+
+	private Tokenizer() {
+	}
+
+	/**
+	 * text의 [from, to) 구간에 있는 토큰을 차례대로 핸들러에 넘긴다. 버퍼의 position은 바꾸지 않는다.
+	 *
+	 * @return 토큰 수
+	 */
+	public static int tokenize(ByteBuffer text, int from, int to, ByteTokenHandler handler) {
+		int tokens = 0;
+		int i = from;
+		while (i < to) {
+			while (i < to && isDelimiter(text.get(i))) {
+				i++;
+			}
+			if (i == to) {
+				break;
+			}
+			int start = i;
+			while (i < to && !isDelimiter(text.get(i))) {
+				i++;
+			}
+			handler.token(text, start, i);
+			tokens++;
+		}
+		return tokens;
+	}
+
+	/**
+	 * CharBuffer나 String 같은 문자 시퀀스의 [from, to) 구간에 있는 토큰을 핸들러에 넘긴다.
+	 *
+	 * @return 토큰 수
+	 */
+	public static int tokenize(CharSequence text, int from, int to, CharTokenHandler handler) {
+		int tokens = 0;
+		int i = from;
+		while (i < to) {
+			while (i < to && isDelimiter(text.charAt(i))) {
+				i++;
+			}
+			if (i == to) {
+				break;
+			}
+			int start = i;
+			while (i < to && !isDelimiter(text.charAt(i))) {
+				i++;
+			}
+			handler.token(text, start, i);
+			tokens++;
+		}
+		return tokens;
+	}
+
+	/**
+	 * UTF-8 바이트 구간을 디코딩하지 않고 String.length()와 같은 UTF-16 문자 수를 센다.
+	 * 4바이트 문자는 서로게이트 쌍이므로 2로 센다.
+	 */
+	public static int charLength(ByteBuffer text, int start, int end) {
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			int b = text.get(i) & 0xFF;
+			if ((b & 0xC0) != 0x80) {
+				length = length + (b >= 0xF0 ? 2 : 1);
+			}
+		}
+		return length;
+	}
+
+	public static boolean isDelimiter(byte b) {
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+
+	public static boolean isDelimiter(char c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B;
+	}
+
+	public interface ByteTokenHandler {
+		void token(ByteBuffer text, int start, int end);
+	}
+
+	public interface CharTokenHandler {
+		void token(CharSequence text, int start, int end);
+	}
+}
@@ -0,0 +1,88 @@
+package chapter02.jdbc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import chapter02.Person;
+import chapter02.jdbc.PeopleBulkLoader.LoadStats;
+
+/**
+ * H2 인메모리 데이터베이스에 people 테이블을 만들고 writer 수, 배치 크기, 커밋 간격 조합마다
+ * 적재 속도(rows/s)를 출력한다. MySQL 서버 없이 적재 설정을 조정해 볼 수 있다. 인자는
+ * key=value 형식이며 쉼표로 여러 값을 주면 모든 조합을 실행한다.
+ * 
+ * <pre>
+ * rows=200000 writers=1,2,4 batch=50,500,2000 commit=1,10
+ * </pre>
+ */
+public class BulkLoadBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> params = parse(args);
+		int rows = Integer.parseInt(params.getOrDefault("rows", "200000"));
+		int[] writers = ints(params.getOrDefault("writers", "1,2,4"));
+		int[] batches = ints(params.getOrDefault("batch", "50,500,2000"));
+		int[] commits = ints(params.getOrDefault("commit", "1,10"));
+
+		List<Person> people = generate(rows, new Random(0));
+		DataSource datasource = DataSources.h2Memory("bulk-benchmark");
+		DataSources.createPeopleTable(datasource);
+
+		// 워밍업: JIT 컴파일과 테이블 초기화 비용을 측정에서 제외
+		PeopleBulkLoader warmup = new PeopleBulkLoader(datasource, 2, 500, 10, 16);
+		warmup.load(people.subList(0, Math.min(rows, 20_000)));
+		warmup.deleteAll();
+
+		System.out.println("=========================== bulk load benchmark");
+		System.out.printf("rows=%d%n", rows);
+		System.out.printf("%8s %8s %8s %12s %10s%n", "writers", "batch", "commit", "rows/s", "seconds");
+		for (int w : writers) {
+			for (int batch : batches) {
+				for (int commit : commits) {
+					PeopleBulkLoader loader = new PeopleBulkLoader(datasource, w, batch, commit, w * 4);
+					LoadStats stats = loader.load(people);
+					loader.deleteAll();
+					System.out.printf("%8d %8d %8d %12.0f %10.2f%n", w, batch, commit, stats.getRowsPerSecond(),
+							stats.getElapsedSeconds());
+				}
+			}
+		}
+	}
+
+	private static List<Person> generate(int rows, Random random) {
+		String[] countries = { "Egypt", "Greenland", "Kenya", "Vanuatu", "Brunei", "Ecuador", "Guernsey" };
+		List<Person> people = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			String name = "Person " + i;
+			String email = "person" + i + "@example.org";
+			String country = countries[random.nextInt(countries.length)];
+			people.add(new Person(name, email, country, 20_000 + random.nextInt(130_000), random.nextInt(50)));
+		}
+		return people;
+	}
+
+	private static int[] ints(String value) {
+		String[] split = value.split(",");
+		int[] result = new int[split.length];
+		for (int i = 0; i < split.length; i++) {
+			result[i] = Integer.parseInt(split[i].trim());
+		}
+		return result;
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> params = new HashMap<>();
+		for (String arg : args) {
+			String[] split = arg.split("=", 2);
+			if (split.length == 2) {
+				params.put(split[0], split[1]);
+			}
+		}
+		return params;
+	}
+}
@@ -0,0 +1,258 @@
+package chapter02.jdbc;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 크기가 제한된 연결 풀. 빌려 간 연결마다 준비된 문장(PreparedStatement)을 SQL 문자열 기준으로
+ * 캐시하므로, 같은 SQL을 반복 실행할 때 연결 생성과 문장 준비 비용이 들지 않는다.
+ * 연결은 주어진 DataSource에서 만들므로 MySQL 대신 H2 같은 내장 데이터베이스도 쓸 수 있다.
+ */
+public class ConnectionPool implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+	private static final long VALIDATE_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	private final DataSource datasource;
+	private final int maxStatements;
+	private final long timeoutMillis;
+	private final Semaphore permits;
+	private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger open = new AtomicInteger();
+	private volatile boolean closed = false;
+
+	public ConnectionPool(DataSource datasource) {
+		this(datasource, 8, 64, TimeUnit.SECONDS.toMillis(5));
+	}
+
+	/**
+	 * @param datasource 실제 연결을 만들 DataSource
+	 * @param maxConnections 동시에 열 수 있는 최대 연결 수
+	 * @param maxStatements 연결마다 캐시할 준비된 문장 수, 넘치면 가장 오래 안 쓴 문장을 닫는다
+	 * @param timeoutMillis 연결이 모두 사용 중일 때 기다리는 최대 시간
+	 */
+	public ConnectionPool(DataSource datasource, int maxConnections, int maxStatements, long timeoutMillis) {
+		Validate.isTrue(maxConnections > 0, "maxConnections must be positive");
+		Validate.isTrue(maxStatements > 0, "maxStatements must be positive");
+		this.datasource = datasource;
+		this.maxStatements = maxStatements;
+		this.timeoutMillis = timeoutMillis;
+		this.permits = new Semaphore(maxConnections, true);
+	}
+
+	/**
+	 * 연결을 빌린다. 돌려받은 Lease는 try-with-resources로 닫아야 풀로 돌아간다.
+	 *
+	 * @throws SQLException 제한 시간 안에 연결을 얻지 못하거나 연결 생성에 실패하면
+	 */
+	public Lease acquire() throws SQLException {
+		Validate.validState(!closed, "pool is closed");
+		try {
+			if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("timed out after " + timeoutMillis + " ms waiting for a connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting for a connection", e);
+		}
+
+		try {
+			PooledConnection pooled;
+			while ((pooled = idle.pollFirst()) != null) {
+				if (pooled.isUsable()) {
+					return new Lease(pooled);
+				}
+				pooled.close();
+			}
+			pooled = new PooledConnection(datasource.getConnection());
+			open.incrementAndGet();
+			return new Lease(pooled);
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return 현재 열려 있는 실제 연결 수 (사용 중 + 유휴)
+	 */
+	public int openConnections() {
+		return open.get();
+	}
+
+	public int idleConnections() {
+		return idle.size();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			pooled.close();
+		}
+	}
+
+	private void release(PooledConnection pooled, boolean broken) {
+		try {
+			if (broken || closed || !pooled.reset()) {
+				pooled.close();
+			} else {
+				// 최근에 쓴 연결을 먼저 다시 쓰도록 앞에 넣는다
+				idle.offerFirst(pooled);
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * 빌린 연결. 여기서 준비한 문장은 캐시에 남으므로 호출한 쪽에서 닫으면 안 된다.
+	 */
+	public class Lease implements AutoCloseable {
+
+		private final PooledConnection pooled;
+		private boolean broken = false;
+		private boolean released = false;
+
+		Lease(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		public Connection connection() {
+			return pooled.connection;
+		}
+
+		/**
+		 * 캐시된 준비된 문장을 돌려주거나 새로 준비한다. 이전 파라미터는 지워져 있다.
+		 */
+		public PreparedStatement prepare(String sql) throws SQLException {
+			try {
+				return pooled.prepare(sql);
+			} catch (SQLException e) {
+				broken = true;
+				throw e;
+			}
+		}
+
+		/**
+		 * 연결에 문제가 생겼다고 표시한다. 반환할 때 풀에 넣지 않고 닫는다.
+		 */
+		public void invalidate() {
+			broken = true;
+		}
+
+		@Override
+		public void close() {
+			if (!released) {
+				released = true;
+				release(pooled, broken);
+			}
+		}
+	}
+
+	private class PooledConnection {
+
+		private final Connection connection;
+		private final Map<String, PreparedStatement> statements;
+		private long lastUsedMillis = System.currentTimeMillis();
+
+		PooledConnection(Connection connection) {
+			this.connection = connection;
+			// 접근 순서 LinkedHashMap으로 LRU 캐시를 만든다
+			this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+					if (size() > maxStatements) {
+						closeQuietly(eldest.getValue());
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		PreparedStatement prepare(String sql) throws SQLException {
+			PreparedStatement statement = statements.get(sql);
+			if (statement == null || statement.isClosed()) {
+				statement = connection.prepareStatement(sql);
+				statements.put(sql, statement);
+			} else {
+				statement.clearParameters();
+			}
+			return statement;
+		}
+
+		boolean isUsable() {
+			try {
+				if (connection.isClosed()) {
+					return false;
+				}
+				if (System.currentTimeMillis() - lastUsedMillis > VALIDATE_AFTER_MILLIS) {
+					return connection.isValid(1);
+				}
+				return true;
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * 다음 사용자를 위해 트랜잭션 상태를 되돌린다.
+		 *
+		 * @return 다시 쓸 수 있으면 true
+		 */
+		boolean reset() {
+			lastUsedMillis = System.currentTimeMillis();
+			try {
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+				return !connection.isClosed();
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		void close() {
+			for (PreparedStatement statement : statements.values()) {
+				closeQuietly(statement);
+			}
+			statements.clear();
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				LOGGER.warn("failed to close connection", e);
+			} finally {
+				open.decrementAndGet();
+			}
+		}
+	}
+
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			LOGGER.warn("failed to close statement", e);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package chapter02.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * 스트림이나 콜백처럼 SQLException을 던질 수 없는 곳에서 SQL 오류를 감싸는 예외.
+ */
+public class DataAccessException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public DataAccessException(SQLException cause) {
+		super(cause);
+	}
+
+	@Override
+	public synchronized SQLException getCause() {
+		return (SQLException) super.getCause();
+	}
+}
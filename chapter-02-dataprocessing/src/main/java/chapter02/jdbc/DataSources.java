@@ -0,0 +1,60 @@
+package chapter02.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
+
+/**
+ * people 데이터베이스에 연결하는 DataSource 생성 도우미.
+ */
+public class DataSources {
+
+	/**
+	 * MySQL DataSource. rewriteBatchedStatements를 켜서 드라이버가 배치로 쌓인 INSERT를
+	 * 여러 행을 담은 INSERT 하나로 다시 써서 보내게 한다.
+	 */
+	public static MysqlDataSource mysql(String serverName, String databaseName, String user, String password) {
+		MysqlDataSource datasource = new MysqlDataSource();
+		datasource.setServerName(serverName);
+		datasource.setDatabaseName(databaseName);
+		datasource.setUser(user);
+		datasource.setPassword(password);
+		datasource.setRewriteBatchedStatements(true);
+		return datasource;
+	}
+
+	/**
+	 * MySQL 서버 없이 적재를 시험할 수 있는 H2 인메모리 DataSource. 마지막 연결이 닫혀도
+	 * JVM이 끝날 때까지 데이터가 남는다. MySQL 호환 모드를 쓰므로 같은 SQL을 쓸 수 있다.
+	 */
+	public static DataSource h2Memory(String name) {
+		JdbcDataSource datasource = new JdbcDataSource();
+		datasource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;MODE=MySQL");
+		datasource.setUser("sa");
+		datasource.setPassword("");
+		return datasource;
+	}
+
+	/**
+	 * data/schema.sql과 같은 구조의 people 테이블이 없으면 만든다.
+	 */
+	public static void createPeopleTable(DataSource datasource) throws SQLException {
+		try (Connection connection = datasource.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS people ("
+					+ "person_id INT UNSIGNED NOT NULL AUTO_INCREMENT, "
+					+ "name VARCHAR(45) NULL, "
+					+ "email VARCHAR(100) NULL, "
+					+ "country VARCHAR(45) NULL, "
+					+ "salary INT NULL, "
+					+ "experience INT NULL, "
+					+ "PRIMARY KEY (person_id))");
+		}
+	}
+}
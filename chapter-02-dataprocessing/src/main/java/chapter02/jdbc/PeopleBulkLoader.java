@@ -0,0 +1,310 @@
+package chapter02.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import chapter02.Person;
+
+/**
+ * people 테이블 대량 적재기. 호출한 스레드가 행을 배치 단위로 묶어 크기가 제한된 대기열에
+ * 넣고, 각자 연결 하나씩을 가진 writer 스레드들이 꺼내서 executeBatch로 보낸다. 자동 커밋을
+ * 끄고 정해진 배치 수마다 커밋하므로 트랜잭션 비용이 행 단위로 들지 않는다.
+ */
+public class PeopleBulkLoader {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeopleBulkLoader.class);
+
+	private static final String INSERT_SQL = "INSERT INTO people (name, email, country, salary, experience) "
+			+ "VALUES (?, ?, ?, ?, ?)";
+	private static final List<Person> END = Collections.emptyList();
+
+	private final DataSource datasource;
+	private final int writers;
+	private final int batchSize;
+	private final int batchesPerCommit;
+	private final int queueCapacity;
+	private final List<LoadListener> listeners = new ArrayList<>();
+
+	public PeopleBulkLoader(DataSource datasource) {
+		this(datasource, 4, 1000, 10, 16);
+	}
+
+	/**
+	 * MySQL이라면 {@link DataSources#mysql(String, String, String, String)}처럼
+	 * rewriteBatchedStatements가 켜진 DataSource를 넘겨야 배치가 다중 행 INSERT로 바뀐다.
+	 *
+	 * @param datasource 연결을 얻을 DataSource
+	 * @param writers 동시에 쓰는 연결 수
+	 * @param batchSize executeBatch 한 번에 보내는 행 수
+	 * @param batchesPerCommit 이 개수만큼 배치를 보내면 커밋
+	 * @param queueCapacity 대기열에 쌓아 둘 수 있는 배치 수, 가득 차면 생산자가 기다린다
+	 */
+	public PeopleBulkLoader(DataSource datasource, int writers, int batchSize, int batchesPerCommit,
+			int queueCapacity) {
+		Validate.isTrue(writers > 0, "writers must be positive");
+		Validate.isTrue(batchSize > 0, "batchSize must be positive");
+		Validate.isTrue(batchesPerCommit > 0, "batchesPerCommit must be positive");
+		Validate.isTrue(queueCapacity > 0, "queueCapacity must be positive");
+		this.datasource = datasource;
+		this.writers = writers;
+		this.batchSize = batchSize;
+		this.batchesPerCommit = batchesPerCommit;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * 적재가 끝난 뒤(실패했더라도 커밋된 행이 있으면) 호출될 리스너를 등록한다. 캐시 무효화 등에 사용한다.
+	 */
+	public void addListener(LoadListener listener) {
+		listeners.add(listener);
+	}
+
+	public LoadStats load(Iterable<Person> people) throws SQLException {
+		return load(people.iterator());
+	}
+
+	/**
+	 * 모든 행을 적재한다. writer 하나라도 실패하면 나머지를 멈추고 첫 예외를 던진다.
+	 * 모든 writer의 커밋되지 않은 배치는 롤백되지만 이미 커밋된 배치는 남는다. 커밋된 배치가
+	 * 하나라도 있으면 실패하더라도 리스너가 호출된다.
+	 */
+	public LoadStats load(Iterator<Person> people) throws SQLException {
+		BlockingQueue<List<Person>> queue = new ArrayBlockingQueue<>(queueCapacity);
+		AtomicReference<SQLException> failure = new AtomicReference<>();
+		LongAdder rows = new LongAdder();
+		LongAdder commits = new LongAdder();
+		long start = System.nanoTime();
+
+		List<Thread> threads = new ArrayList<>(writers);
+		for (int i = 0; i < writers; i++) {
+			Thread thread = new Thread(() -> write(queue, failure, rows, commits), "bulk-writer-" + i);
+			thread.setDaemon(true);
+			thread.start();
+			threads.add(thread);
+		}
+
+		long lastReport = start;
+		try {
+			List<Person> batch = new ArrayList<>(batchSize);
+			while (people.hasNext() && failure.get() == null) {
+				batch.add(people.next());
+				if (batch.size() == batchSize) {
+					offer(queue, batch, failure);
+					batch = new ArrayList<>(batchSize);
+				}
+				long now = System.nanoTime();
+				if (now - lastReport > TimeUnit.SECONDS.toNanos(5)) {
+					LOGGER.info("loaded {} rows, {} rows/s", rows.sum(),
+							String.format("%.0f", rows.sum() / ((now - start) / 1e9)));
+					lastReport = now;
+				}
+			}
+			if (!batch.isEmpty()) {
+				offer(queue, batch, failure);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure.compareAndSet(null, new SQLException("interrupted while loading", e));
+		} finally {
+			for (int i = 0; i < writers; i++) {
+				putEnd(queue, failure);
+			}
+			for (Thread thread : threads) {
+				joinQuietly(thread);
+			}
+			// 실패하더라도 이미 커밋된 배치는 테이블에 남으므로 리스너에 알린다
+			if (commits.sum() > 0) {
+				notifyListeners(new LoadStats(rows.sum(), commits.sum(), System.nanoTime() - start));
+			}
+		}
+
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		LoadStats stats = new LoadStats(rows.sum(), commits.sum(), System.nanoTime() - start);
+		LOGGER.info("bulk load finished: {}", stats);
+		return stats;
+	}
+
+	/**
+	 * people 테이블을 비운다. 다음 적재 전에 호출한다.
+	 */
+	public void deleteAll() throws SQLException {
+		try (Connection connection = datasource.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.execute("DELETE FROM people");
+		} finally {
+			notifyListeners(new LoadStats(0, 0, 0));
+		}
+	}
+
+	private void notifyListeners(LoadStats stats) {
+		for (LoadListener listener : listeners) {
+			try {
+				listener.loaded(stats);
+			} catch (RuntimeException e) {
+				LOGGER.warn("load listener failed", e);
+			}
+		}
+	}
+
+	private void write(BlockingQueue<List<Person>> queue, AtomicReference<SQLException> failure, LongAdder rows,
+			LongAdder commits) {
+		try (Connection connection = datasource.getConnection()) {
+			connection.setAutoCommit(false);
+			try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+				int uncommitted = 0;
+				long pendingRows = 0;
+				while (true) {
+					List<Person> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+					if (batch == END || failure.get() != null) {
+						break;
+					}
+					if (batch == null) {
+						continue;
+					}
+					for (Person person : batch) {
+						statement.setString(1, person.getName());
+						statement.setString(2, person.getEmail());
+						statement.setString(3, person.getCountry());
+						statement.setInt(4, person.getSalary());
+						statement.setInt(5, person.getExperience());
+						statement.addBatch();
+					}
+					statement.executeBatch();
+					pendingRows = pendingRows + batch.size();
+					if (++uncommitted >= batchesPerCommit) {
+						connection.commit();
+						commits.increment();
+						rows.add(pendingRows);
+						uncommitted = 0;
+						pendingRows = 0;
+					}
+				}
+				if (failure.get() != null) {
+					// 다른 writer가 실패했으면 실행만 하고 커밋하지 않은 배치를 남기지 않는다
+					rollbackQuietly(connection);
+				} else if (uncommitted > 0) {
+					connection.commit();
+					commits.increment();
+					rows.add(pendingRows);
+				}
+			} catch (SQLException | RuntimeException | InterruptedException e) {
+				rollbackQuietly(connection);
+				throw e;
+			}
+		} catch (SQLException e) {
+			failure.compareAndSet(null, e);
+		} catch (InterruptedException e) {
+			failure.compareAndSet(null, new SQLException("writer interrupted", e));
+		} catch (RuntimeException e) {
+			failure.compareAndSet(null, new SQLException(e));
+		}
+	}
+
+	private static void offer(BlockingQueue<List<Person>> queue, List<Person> batch,
+			AtomicReference<SQLException> failure) throws InterruptedException {
+		// 모든 writer가 실패하면 대기열이 비지 않으므로 주기적으로 실패 여부를 확인한다
+		while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+			if (failure.get() != null) {
+				return;
+			}
+		}
+	}
+
+	private static void putEnd(BlockingQueue<List<Person>> queue, AtomicReference<SQLException> failure) {
+		boolean interrupted = false;
+		while (true) {
+			if (failure.get() != null) {
+				// 실패한 뒤에는 남은 배치를 버리고 writer를 바로 멈춘다
+				queue.clear();
+			}
+			try {
+				if (queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+				failure.compareAndSet(null, new SQLException("interrupted while loading", e));
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void joinQuietly(Thread thread) {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void rollbackQuietly(Connection connection) {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			LOGGER.warn("rollback failed", e);
+		}
+	}
+
+	/**
+	 * 적재(또는 테이블 비우기)가 끝났을 때 호출된다.
+	 */
+	public interface LoadListener {
+		void loaded(LoadStats stats);
+	}
+
+	public static class LoadStats {
+
+		private final long rows;
+		private final long commits;
+		private final long elapsedNanos;
+
+		public LoadStats(long rows, long commits, long elapsedNanos) {
+			this.rows = rows;
+			this.commits = commits;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		public long getCommits() {
+			return commits;
+		}
+
+		public double getElapsedSeconds() {
+			return elapsedNanos / 1e9;
+		}
+
+		public double getRowsPerSecond() {
+			return elapsedNanos == 0 ? 0.0 : rows / getElapsedSeconds();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("LoadStats [rows=%d, commits=%d, elapsed=%.2f s, rowsPerSecond=%.0f]", rows,
+					commits, getElapsedSeconds(), getRowsPerSecond());
+		}
+	}
+}
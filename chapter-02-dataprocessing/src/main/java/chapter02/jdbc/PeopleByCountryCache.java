@@ -0,0 +1,273 @@
+package chapter02.jdbc;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.Validate;
+
+import chapter02.Person;
+import chapter02.jdbc.PeopleBulkLoader.LoadStats;
+import chapter02.metrics.LatencyHistogram;
+
+/**
+ * 국가별 사람 목록 조회 결과를 Person[]로 보관하는 read-through 캐시. 전체 행 수가 제한을 넘으면
+ * LRU 또는 LFU로 국가 하나를 내보내고, TTL이 지난 항목은 다시 읽는다. 같은 국가를 여러 스레드가
+ * 동시에 요청하면 데이터베이스 조회는 한 번만 한다. 국가 수가 많지 않다고 보고 내보낼 항목은
+ * 전체를 훑어서 고른다.
+ *
+ * 테이블이 바뀌면 {@link #invalidateAll()}을 호출해야 한다. {@link PeopleBulkLoader}에는
+ * 리스너로 등록하면 적재나 삭제가 끝날 때마다 자동으로 비워진다. {@link PeopleDao}로 만든 캐시는
+ * 그 DAO의 insert, deleteAll에도 자동으로 비워진다.
+ */
+public class PeopleByCountryCache implements PeopleBulkLoader.LoadListener {
+
+	public enum Eviction {
+		LRU, LFU
+	}
+
+	public interface Loader {
+		List<Person> load(String country) throws SQLException;
+	}
+
+	private final Loader loader;
+	private final Eviction eviction;
+	private final long maxRows;
+	private final long ttlNanos;
+
+	private final Map<String, Entry> entries = new HashMap<>();
+	private final Map<String, CompletableFuture<Person[]>> loading = new HashMap<>();
+	private long rows = 0;
+	private long clock = 0;
+	private long generation = 0;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+	public PeopleByCountryCache(PeopleDao dao) {
+		this(dao::findByCountry, Eviction.LRU, 1_000_000, 10, TimeUnit.MINUTES);
+		dao.addListener(this);
+	}
+
+	/**
+	 * @param loader 캐시에 없을 때 호출할 조회 함수
+	 * @param eviction 행 수가 넘칠 때 내보낼 항목을 고르는 방법
+	 * @param maxRows 캐시에 담을 최대 사람 수 (모든 국가 합계)
+	 * @param ttl 항목을 읽어 온 뒤 유효한 시간
+	 */
+	public PeopleByCountryCache(Loader loader, Eviction eviction, long maxRows, long ttl, TimeUnit unit) {
+		Validate.isTrue(maxRows > 0, "maxRows must be positive");
+		Validate.isTrue(ttl > 0, "ttl must be positive");
+		this.loader = loader;
+		this.eviction = eviction;
+		this.maxRows = maxRows;
+		this.ttlNanos = unit.toNanos(ttl);
+	}
+
+	/**
+	 * 캐시에 있으면 바로 돌려주고, 없거나 만료되었으면 데이터베이스에서 읽어 채운다.
+	 *
+	 * @return 수정할 수 없는 목록
+	 */
+	public List<Person> get(String country) throws SQLException {
+		CompletableFuture<Person[]> future;
+		boolean owner = false;
+		long loadGeneration;
+		synchronized (this) {
+			Entry entry = entries.get(country);
+			if (entry != null && System.nanoTime() - entry.loadedNanos > ttlNanos) {
+				remove(country);
+				expirations.increment();
+				entry = null;
+			}
+			if (entry != null) {
+				entry.lastAccess = ++clock;
+				entry.frequency++;
+				hits.increment();
+				return view(entry.people);
+			}
+			misses.increment();
+			loadGeneration = generation;
+			future = loading.get(country);
+			if (future == null) {
+				future = new CompletableFuture<>();
+				loading.put(country, future);
+				owner = true;
+			}
+		}
+
+		if (!owner) {
+			return view(await(future));
+		}
+
+		long start = System.nanoTime();
+		try {
+			Person[] people = loader.load(country).toArray(new Person[0]);
+			loadLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			synchronized (this) {
+				// 무효화 뒤에 시작된 새 읽기가 등록되어 있을 수 있으므로 자기 것만 지운다
+				loading.remove(country, future);
+				// 읽는 동안 무효화되었으면 오래된 결과일 수 있으므로 캐시에 넣지 않는다
+				if (loadGeneration == generation) {
+					put(country, people);
+				}
+			}
+			future.complete(people);
+			return view(people);
+		} catch (SQLException | RuntimeException e) {
+			synchronized (this) {
+				loading.remove(country, future);
+			}
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * 항목과 진행 중인 읽기를 함께 버린다. 이후의 get은 무효화 전에 시작된 읽기를 기다리지 않고
+	 * 새로 읽는다.
+	 */
+	public synchronized void invalidate(String country) {
+		remove(country);
+		loading.remove(country);
+		generation++;
+	}
+
+	public synchronized void invalidateAll() {
+		entries.clear();
+		loading.clear();
+		rows = 0;
+		generation++;
+	}
+
+	@Override
+	public void loaded(LoadStats stats) {
+		invalidateAll();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long rows() {
+		return rows;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public double getHitRate() {
+		long total = hits.sum() + misses.sum();
+		return total == 0 ? 0.0 : (double) hits.sum() / total;
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	public LatencyHistogram getLoadLatency() {
+		return loadLatency;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PeopleByCountryCache [entries=%d, rows=%d, hitRate=%.3f, hits=%d, misses=%d, "
+				+ "evictions=%d, expirations=%d, load=%s]", size(), rows(), getHitRate(), getHits(), getMisses(),
+				getEvictions(), getExpirations(), loadLatency);
+	}
+
+	private void put(String country, Person[] people) {
+		if (people.length > maxRows) {
+			return;
+		}
+		remove(country);
+		while (rows + people.length > maxRows && !entries.isEmpty()) {
+			remove(victim());
+			evictions.increment();
+		}
+		Entry entry = new Entry(people, System.nanoTime());
+		entry.lastAccess = ++clock;
+		entries.put(country, entry);
+		rows = rows + people.length;
+	}
+
+	private String victim() {
+		String victim = null;
+		Entry worst = null;
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			if (worst == null || isWorse(entry, worst)) {
+				victim = e.getKey();
+				worst = entry;
+			}
+		}
+		return victim;
+	}
+
+	private boolean isWorse(Entry a, Entry b) {
+		if (eviction == Eviction.LFU && a.frequency != b.frequency) {
+			return a.frequency < b.frequency;
+		}
+		return a.lastAccess < b.lastAccess;
+	}
+
+	private void remove(String country) {
+		Entry removed = entries.remove(country);
+		if (removed != null) {
+			rows = rows - removed.people.length;
+		}
+	}
+
+	private static List<Person> view(Person[] people) {
+		return Collections.unmodifiableList(Arrays.asList(people));
+	}
+
+	private static Person[] await(CompletableFuture<Person[]> future) throws SQLException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting for a load", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new SQLException(cause);
+		}
+	}
+
+	private static class Entry {
+		private final Person[] people;
+		private final long loadedNanos;
+		private long lastAccess;
+		private long frequency = 1;
+
+		Entry(Person[] people, long loadedNanos) {
+			this.people = people;
+			this.loadedNanos = loadedNanos;
+		}
+	}
+}
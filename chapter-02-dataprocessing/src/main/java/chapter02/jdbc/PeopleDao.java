@@ -0,0 +1,172 @@
+package chapter02.jdbc;
+
+import java.io.Closeable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import chapter02.Person;
+import chapter02.jdbc.ConnectionPool.Lease;
+import chapter02.jdbc.PeopleBulkLoader.LoadListener;
+import chapter02.jdbc.PeopleBulkLoader.LoadStats;
+import chapter02.jdbc.PeopleQueries.Binder;
+import chapter02.jdbc.PeopleQueries.RowMapper;
+
+/**
+ * people 테이블 접근 계층. 연결은 {@link ConnectionPool}에서 빌리고 문장은 연결별로 캐시하며,
+ * 문장마다 지연 시간과 행 수를 {@link StatementMetrics}에 기록한다.
+ */
+public class PeopleDao implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeopleDao.class);
+
+	static final String SELECT_BY_COUNTRY = "SELECT name, email, salary, experience FROM people WHERE country = ?";
+	static final String SELECT_BY_EMAIL = "SELECT name, email, country, salary, experience FROM people "
+			+ "WHERE email = ?";
+	static final String COUNT_BY_COUNTRY = "SELECT COUNT(*) FROM people WHERE country = ?";
+	static final String INSERT = "INSERT INTO people (name, email, country, salary, experience) "
+			+ "VALUES (?, ?, ?, ?, ?)";
+	static final String DELETE_ALL = "DELETE FROM people";
+
+	private final ConnectionPool pool;
+	private final StatementMetrics metrics;
+	private final boolean ownsPool;
+	private final List<LoadListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * 기본 설정의 연결 풀을 만든다. 풀은 이 객체를 닫을 때 함께 닫힌다.
+	 */
+	public PeopleDao(DataSource datasource) {
+		this(new ConnectionPool(datasource), new StatementMetrics(), true);
+	}
+
+	public PeopleDao(ConnectionPool pool, StatementMetrics metrics) {
+		this(pool, metrics, false);
+	}
+
+	private PeopleDao(ConnectionPool pool, StatementMetrics metrics, boolean ownsPool) {
+		this.pool = pool;
+		this.metrics = metrics;
+		this.ownsPool = ownsPool;
+	}
+
+	/**
+	 * insert나 deleteAll로 테이블이 바뀐 뒤 호출될 리스너를 등록한다. 캐시 무효화 등에 사용한다.
+	 */
+	public void addListener(LoadListener listener) {
+		listeners.add(listener);
+	}
+
+	public List<Person> findByCountry(String country) throws SQLException {
+		return query(SELECT_BY_COUNTRY, statement -> statement.setString(1, country),
+				rs -> new Person(rs.getString(1), rs.getString(2), country, rs.getInt(3), rs.getInt(4)));
+	}
+
+	public Optional<Person> findByEmail(String email) throws SQLException {
+		List<Person> found = query(SELECT_BY_EMAIL, statement -> statement.setString(1, email),
+				rs -> new Person(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getInt(5)));
+		return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+	}
+
+	public int countByCountry(String country) throws SQLException {
+		return query(COUNT_BY_COUNTRY, statement -> statement.setString(1, country), rs -> rs.getInt(1)).get(0);
+	}
+
+	public int insert(Person person) throws SQLException {
+		long start = System.nanoTime();
+		int rows = 0;
+		try {
+			rows = update(INSERT, statement -> bind(statement, person));
+			return rows;
+		} finally {
+			if (rows > 0) {
+				notifyListeners(new LoadStats(rows, 1, System.nanoTime() - start));
+			}
+		}
+	}
+
+	public int deleteAll() throws SQLException {
+		try {
+			return update(DELETE_ALL, statement -> {
+			});
+		} finally {
+			notifyListeners(new LoadStats(0, 0, 0));
+		}
+	}
+
+	public StatementMetrics getMetrics() {
+		return metrics;
+	}
+
+	public ConnectionPool getPool() {
+		return pool;
+	}
+
+	@Override
+	public void close() {
+		if (ownsPool) {
+			pool.close();
+		}
+	}
+
+	static void bind(PreparedStatement statement, Person person) throws SQLException {
+		statement.setString(1, person.getName());
+		statement.setString(2, person.getEmail());
+		statement.setString(3, person.getCountry());
+		statement.setInt(4, person.getSalary());
+		statement.setInt(5, person.getExperience());
+	}
+
+	private void notifyListeners(LoadStats stats) {
+		for (LoadListener listener : listeners) {
+			try {
+				listener.loaded(stats);
+			} catch (RuntimeException e) {
+				LOGGER.warn("load listener failed", e);
+			}
+		}
+	}
+
+	private <T> List<T> query(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+		long start = System.nanoTime();
+		List<T> result = new ArrayList<>();
+		boolean failed = true;
+		try (Lease lease = pool.acquire()) {
+			PreparedStatement statement = lease.prepare(sql);
+			binder.bind(statement);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					result.add(mapper.map(rs));
+				}
+			}
+			failed = false;
+			return result;
+		} finally {
+			metrics.record(sql, System.nanoTime() - start, result.size(), failed);
+		}
+	}
+
+	private int update(String sql, Binder binder) throws SQLException {
+		long start = System.nanoTime();
+		int rows = 0;
+		boolean failed = true;
+		try (Lease lease = pool.acquire()) {
+			PreparedStatement statement = lease.prepare(sql);
+			binder.bind(statement);
+			rows = statement.executeUpdate();
+			failed = false;
+			return rows;
+		} finally {
+			metrics.record(sql, System.nanoTime() - start, rows, failed);
+		}
+	}
+}
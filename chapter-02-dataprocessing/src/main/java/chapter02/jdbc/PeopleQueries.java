@@ -0,0 +1,179 @@
+package chapter02.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import chapter02.Person;
+import chapter02.table.PersonTable;
+
+/**
+ * people 테이블 조회를 결과 전체를 리스트로 모으지 않고 커서로 조금씩 읽는다.
+ * 반환된 스트림은 연결을 잡고 있으므로 반드시 try-with-resources로 닫아야 한다.
+ */
+public class PeopleQueries {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeopleQueries.class);
+
+	private static final String BY_COUNTRY_SQL = "SELECT name, email, salary, experience "
+			+ "FROM people WHERE country = ?";
+
+	private final DataSource datasource;
+	private final int fetchSize;
+
+	public PeopleQueries(DataSource datasource) {
+		this(datasource, 1000);
+	}
+
+	/**
+	 * @param fetchSize 서버에서 한 번에 가져올 행 수. MySQL은 fetch size를 무시하고 전체 결과를
+	 *            메모리에 올리므로 대신 행 단위 스트리밍(Integer.MIN_VALUE)을 사용한다
+	 */
+	public PeopleQueries(DataSource datasource, int fetchSize) {
+		Validate.isTrue(fetchSize > 0, "fetchSize must be positive");
+		this.datasource = datasource;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * 국가별 사람 목록을 지연 스트림으로 반환한다. 첫 행은 질의가 끝나기 전에 받을 수 있다.
+	 *
+	 * @throws DataAccessException 스트림을 읽는 도중 SQL 오류가 나면
+	 */
+	public Stream<Person> byCountry(String country) throws SQLException {
+		return query(BY_COUNTRY_SQL, statement -> statement.setString(1, country),
+				rs -> new Person(rs.getString(1), rs.getString(2), country, rs.getInt(3), rs.getInt(4)));
+	}
+
+	/**
+	 * 국가별 사람 목록을 batchSize 행씩 열 단위 {@link PersonTable}로 consumer에 넘긴다.
+	 *
+	 * @return 읽은 전체 행 수
+	 */
+	public long byCountry(String country, int batchSize, Consumer<PersonTable> consumer) throws SQLException {
+		Validate.isTrue(batchSize > 0, "batchSize must be positive");
+		long total = 0;
+		try (Connection connection = datasource.getConnection();
+				PreparedStatement statement = prepare(connection, BY_COUNTRY_SQL)) {
+			statement.setString(1, country);
+			try (ResultSet rs = statement.executeQuery()) {
+				PersonTable.Builder batch = new PersonTable.Builder(batchSize);
+				int rows = 0;
+				while (rs.next()) {
+					batch.add(rs.getString(1), rs.getString(2), country, rs.getInt(3), rs.getInt(4));
+					if (++rows == batchSize) {
+						consumer.accept(batch.build());
+						batch = new PersonTable.Builder(batchSize);
+						total = total + rows;
+						rows = 0;
+					}
+				}
+				if (rows > 0) {
+					consumer.accept(batch.build());
+					total = total + rows;
+				}
+			} finally {
+				endCursor(connection);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 임의의 SELECT를 지연 스트림으로 실행한다. 연결, 문장, 결과 집합은 스트림을 닫을 때
+	 * 함께 닫힌다.
+	 */
+	public <T> Stream<T> query(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+		Connection connection = datasource.getConnection();
+		try {
+			PreparedStatement statement = prepare(connection, sql);
+			binder.bind(statement);
+			ResultSet rs = statement.executeQuery();
+			Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+					Spliterator.ORDERED | Spliterator.NONNULL) {
+				@Override
+				public boolean tryAdvance(Consumer<? super T> action) {
+					try {
+						if (!rs.next()) {
+							return false;
+						}
+						action.accept(mapper.map(rs));
+						return true;
+					} catch (SQLException e) {
+						throw new DataAccessException(e);
+					}
+				}
+			};
+			return StreamSupport.stream(rows, false).onClose(() -> close(connection, statement, rs));
+		} catch (SQLException | RuntimeException e) {
+			closeQuietly(connection);
+			throw e;
+		}
+	}
+
+	/**
+	 * 커서를 쓰도록 준비된 문장을 만든다. PostgreSQL 등은 자동 커밋이 꺼져 있어야 fetch size를
+	 * 커서로 처리한다.
+	 */
+	private PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+		boolean mysql = isMysql(connection);
+		if (!mysql) {
+			connection.setAutoCommit(false);
+		}
+		PreparedStatement statement =
+				connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		statement.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+		return statement;
+	}
+
+	private static boolean isMysql(Connection connection) throws SQLException {
+		return "MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+	}
+
+	private static void endCursor(Connection connection) throws SQLException {
+		if (!connection.getAutoCommit()) {
+			connection.commit();
+			connection.setAutoCommit(true);
+		}
+	}
+
+	private static void close(Connection connection, PreparedStatement statement, ResultSet rs) {
+		try {
+			rs.close();
+			statement.close();
+			endCursor(connection);
+		} catch (SQLException e) {
+			LOGGER.warn("failed to close cursor", e);
+		} finally {
+			closeQuietly(connection);
+		}
+	}
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			LOGGER.warn("failed to close connection", e);
+		}
+	}
+
+	public interface Binder {
+		void bind(PreparedStatement statement) throws SQLException;
+	}
+
+	public interface RowMapper<T> {
+		T map(ResultSet rs) throws SQLException;
+	}
+}
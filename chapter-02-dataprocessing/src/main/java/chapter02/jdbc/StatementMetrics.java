@@ -0,0 +1,64 @@
+package chapter02.jdbc;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import chapter02.metrics.LatencyHistogram;
+
+/**
+ * SQL 문장별 실행 횟수, 지연 시간 분포, 처리한 행 수, 오류 수.
+ */
+public class StatementMetrics {
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	public void record(String sql, long nanos, long rows, boolean failed) {
+		Entry entry = entries.computeIfAbsent(sql, s -> new Entry());
+		entry.latency.record(nanos, TimeUnit.NANOSECONDS);
+		entry.rows.add(rows);
+		if (failed) {
+			entry.errors.increment();
+		}
+	}
+
+	public long getCount(String sql) {
+		Entry entry = entries.get(sql);
+		return entry == null ? 0 : entry.latency.getCount();
+	}
+
+	public long getRows(String sql) {
+		Entry entry = entries.get(sql);
+		return entry == null ? 0 : entry.rows.sum();
+	}
+
+	public LatencyHistogram getLatency(String sql) {
+		Entry entry = entries.get(sql);
+		return entry == null ? new LatencyHistogram() : entry.latency;
+	}
+
+	/**
+	 * @return SQL → "rows=.., errors=.., count=.., mean=.., p50=.." 요약
+	 */
+	public Map<String, String> snapshot() {
+		Map<String, String> snapshot = new TreeMap<>();
+		entries.forEach((sql, entry) -> snapshot.put(sql, "rows=" + entry.rows.sum() + ", errors="
+				+ entry.errors.sum() + ", " + entry.latency));
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		snapshot().forEach((sql, summary) -> sb.append(sql).append(" -> ").append(summary).append('\n'));
+		return sb.toString();
+	}
+
+	private static class Entry {
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+	}
+}
@@ -0,0 +1,99 @@
+package chapter02.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 마이크로초 단위의 지연 시간 히스토그램. 버킷은 2의 거듭제곱 구간을 8등분하므로
+ * 백분위 오차는 12.5% 이내이고, 기록할 때 메모리를 할당하지 않으며 여러 스레드에서 동시에 기록할 수 있다.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 8;
+	private static final int SUB_BITS = 3;
+	private static final int LINEAR = 2 * SUB_BUCKETS;
+	private static final int BUCKETS = LINEAR + (64 - SUB_BITS - 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	public void record(long duration, TimeUnit unit) {
+		recordMicros(unit.toMicros(duration));
+	}
+
+	public void recordMicros(long micros) {
+		long value = Math.max(0, micros);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMeanMicros() {
+		long n = count.sum();
+		return n == 0 ? 0.0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @param percentile 0에서 100 사이의 백분위
+	 * @return 해당 백분위가 속한 버킷의 상한 (마이크로초)
+	 */
+	public long percentileMicros(double percentile) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total = total + counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100.0 * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen = seen + counts.get(i);
+			if (seen >= Math.max(1, rank)) {
+				return upperBound(i);
+			}
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d, mean=%.0fus, p50=%dus, p90=%dus, p99=%dus, max=%dus", getCount(),
+				getMeanMicros(), percentileMicros(50), percentileMicros(90), percentileMicros(99),
+				percentileMicros(100));
+	}
+
+	private static int bucketOf(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < LINEAR) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+		int sub = (bucket - LINEAR) % SUB_BUCKETS;
+		long base = 1L << exponent;
+		long width = 1L << (exponent - SUB_BITS);
+		return base + (sub + 1) * width - 1;
+	}
+}
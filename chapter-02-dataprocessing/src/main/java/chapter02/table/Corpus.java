@@ -0,0 +1,283 @@
+package chapter02.table;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import chapter02.Word;
+
+/**
+ * 단어 목록을 Word 객체 대신 토큰 ID(int[])와 품사 코드(byte[])로 저장한다. 토큰과 품사 문자열은
+ * 심볼 테이블({@link StringDictionary})에 한 번만 저장되므로 같은 단어가 반복되는 코퍼스에서
+ * 메모리가 크게 줄고, 품사별 분류나 개수 세기는 코드를 배열 인덱스로 쓰는 한 번의 스캔이 된다.
+ * 문장 같은 일부 구간은 {@link #slice(int, int)}로 배열을 복사하지 않고 잘라낸다.
+ */
+public class Corpus {
+
+	/**
+	 * 품사 코드를 byte에 담으므로 품사 종류는 이 수를 넘을 수 없다.
+	 */
+	public static final int MAX_POS_TAGS = 256;
+
+	private final int[] tokens;
+	private final byte[] posTags;
+	private final int offset;
+	private final int size;
+	private final StringDictionary tokenDictionary;
+	private final StringDictionary posDictionary;
+
+	private Corpus(int[] tokens, byte[] posTags, int offset, int size, StringDictionary tokenDictionary,
+			StringDictionary posDictionary) {
+		this.tokens = tokens;
+		this.posTags = posTags;
+		this.offset = offset;
+		this.size = size;
+		this.tokenDictionary = tokenDictionary;
+		this.posDictionary = posDictionary;
+	}
+
+	public static Corpus of(List<Word> words) {
+		Builder builder = new Builder(words.size());
+		for (Word word : words) {
+			builder.add(word);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * "토큰\t품사" 형식의 줄을 읽는다. 탭이 없는 줄은 건너뛴다.
+	 *
+	 * @param lowerCase 토큰을 소문자로 바꿀지 여부
+	 */
+	public static Corpus read(Path file, boolean lowerCase) throws IOException {
+		Builder builder = new Builder();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab < 0) {
+					continue;
+				}
+				String token = line.substring(0, tab);
+				builder.add(lowerCase ? token.toLowerCase() : token, line.substring(tab + 1));
+			}
+		}
+		return builder.build();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int tokenId(int index) {
+		return tokens[offset + checkIndex(index)];
+	}
+
+	public int posCode(int index) {
+		return posTags[offset + checkIndex(index)] & 0xFF;
+	}
+
+	public String token(int index) {
+		return tokenDictionary.decode(tokenId(index));
+	}
+
+	public String pos(int index) {
+		return posDictionary.decode(posCode(index));
+	}
+
+	/**
+	 * @return 심볼 테이블의 문자열을 그대로 가리키는 Word, 문자열은 복사하지 않는다
+	 */
+	public Word get(int index) {
+		return new Word(token(index), pos(index));
+	}
+
+	public List<Word> get(int[] indexes) {
+		List<Word> result = new ArrayList<>(indexes.length);
+		for (int index : indexes) {
+			result.add(get(index));
+		}
+		return result;
+	}
+
+	/**
+	 * @return Word가 필요한 API를 위한 읽기 전용 뷰, 원소를 꺼낼 때마다 Word를 만든다
+	 */
+	public List<Word> asWords() {
+		return new AbstractList<Word>() {
+			@Override
+			public Word get(int index) {
+				return Corpus.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * 문장처럼 [from, to) 구간만 보는 코퍼스. 배열과 심볼 테이블을 공유한다.
+	 */
+	public Corpus slice(int from, int to) {
+		Validate.isTrue(0 <= from && from <= to && to <= size, "invalid range [%d, %d) of %d", from, to, size);
+		return new Corpus(tokens, posTags, offset + from, to - from, tokenDictionary, posDictionary);
+	}
+
+	/**
+	 * @return 토큰 ID 배열의 복사본
+	 */
+	public int[] tokenIds() {
+		return Arrays.copyOfRange(tokens, offset, offset + size);
+	}
+
+	/**
+	 * @return 품사 코드 배열의 복사본, 코드는 & 0xFF로 읽는다
+	 */
+	public byte[] posCodes() {
+		return Arrays.copyOfRange(posTags, offset, offset + size);
+	}
+
+	public StringDictionary getTokenDictionary() {
+		return tokenDictionary;
+	}
+
+	public StringDictionary getPosDictionary() {
+		return posDictionary;
+	}
+
+	/**
+	 * pos == value 필터.
+	 *
+	 * @return 품사가 pos인 단어의 위치, 오름차순
+	 */
+	public int[] positionsOf(String pos) {
+		int code = posDictionary.codeOf(pos);
+		if (code == StringDictionary.MISSING) {
+			return new int[0];
+		}
+		int[] positions = new int[countByPos()[code]];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if ((posTags[offset + i] & 0xFF) == code) {
+				positions[n++] = i;
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * groupingBy(Word::getPos)에 해당한다. 품사별 개수를 센 뒤 위치를 한 배열에 나눠 담는다.
+	 *
+	 * @return 품사 코드 → 그 품사인 단어의 위치(오름차순)
+	 */
+	public int[][] groupByPos() {
+		int[] counts = countByPos();
+		int[][] groups = new int[counts.length][];
+		for (int code = 0; code < counts.length; code++) {
+			groups[code] = new int[counts[code]];
+		}
+		int[] filled = new int[counts.length];
+		for (int i = 0; i < size; i++) {
+			int code = posTags[offset + i] & 0xFF;
+			groups[code][filled[code]++] = i;
+		}
+		return groups;
+	}
+
+	/**
+	 * @return 품사 코드 → 단어 수
+	 */
+	public int[] countByPos() {
+		int[] counts = new int[posDictionary.size()];
+		for (int i = 0; i < size; i++) {
+			counts[posTags[offset + i] & 0xFF]++;
+		}
+		return counts;
+	}
+
+	/**
+	 * @return 토큰 ID → 출현 횟수
+	 */
+	public int[] countByToken() {
+		int[] counts = new int[tokenDictionary.size()];
+		for (int i = 0; i < size; i++) {
+			counts[tokens[offset + i]]++;
+		}
+		return counts;
+	}
+
+	@Override
+	public String toString() {
+		return "Corpus [size=" + size + ", tokens=" + tokenDictionary.size() + ", posTags=" + posDictionary.size()
+				+ "]";
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " of " + size);
+		}
+		return index;
+	}
+
+	public static class Builder {
+
+		private int[] tokens;
+		private byte[] posTags;
+		private final StringDictionary tokenDictionary;
+		private final StringDictionary posDictionary;
+		private int size = 0;
+
+		public Builder() {
+			this(1024);
+		}
+
+		public Builder(int capacity) {
+			this(capacity, new StringDictionary(), new StringDictionary());
+		}
+
+		/**
+		 * 여러 코퍼스(문서, 문장)가 같은 ID를 쓰도록 심볼 테이블을 공유할 때 사용한다.
+		 */
+		public Builder(int capacity, StringDictionary tokenDictionary, StringDictionary posDictionary) {
+			Validate.isTrue(posDictionary.size() <= MAX_POS_TAGS, "too many POS tags: %d", posDictionary.size());
+			int initial = Math.max(16, capacity);
+			this.tokens = new int[initial];
+			this.posTags = new byte[initial];
+			this.tokenDictionary = tokenDictionary;
+			this.posDictionary = posDictionary;
+		}
+
+		public Builder add(Word word) {
+			return add(word.getToken(), word.getPos());
+		}
+
+		public Builder add(String token, String pos) {
+			int posCode = posDictionary.encode(pos);
+			Validate.isTrue(posCode < MAX_POS_TAGS, "too many POS tags: %d", posCode + 1);
+			if (size == tokens.length) {
+				int capacity = size * 2;
+				tokens = Arrays.copyOf(tokens, capacity);
+				posTags = Arrays.copyOf(posTags, capacity);
+			}
+			tokens[size] = tokenDictionary.encode(token);
+			posTags[size] = (byte) posCode;
+			size++;
+			return this;
+		}
+
+		public Corpus build() {
+			return new Corpus(Arrays.copyOf(tokens, size), Arrays.copyOf(posTags, size), 0, size, tokenDictionary,
+					posDictionary);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package chapter02.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * 범주형 열을 한 번 훑어서 int[] 코드 열로 바꾼다. 병렬로 인코딩할 때는 구간마다 지역 사전을
+ * 만든 뒤 구간 순서대로 전역 사전에 합치고 코드를 다시 매기므로, 코드는 순차 인코딩과 같게
+ * 처음 나온 순서대로 붙는다. null은 {@link StringDictionary#MISSING}이 된다.
+ */
+public class DictionaryEncoder {
+
+	private final StringDictionary dictionary;
+	private final boolean frozen;
+
+	public DictionaryEncoder() {
+		this(new StringDictionary(), false);
+	}
+
+	/**
+	 * @param dictionary 사용할 사전, 저장해 둔 학습 사전을 넘기면 같은 코드를 쓴다
+	 * @param frozen true면 사전에 없는 값을 추가하지 않고 {@link StringDictionary#MISSING}으로 인코딩한다
+	 */
+	public DictionaryEncoder(StringDictionary dictionary, boolean frozen) {
+		this.dictionary = dictionary;
+		this.frozen = frozen;
+	}
+
+	public StringDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public int[] encode(List<?> values) {
+		int[] codes = new int[values.size()];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = encode(dictionary, values.get(i), frozen);
+		}
+		return codes;
+	}
+
+	/**
+	 * @param threads 인코딩 스레드 수
+	 */
+	public int[] encodeParallel(List<?> values, int threads) {
+		Validate.isTrue(threads > 0, "threads must be positive");
+		int size = values.size();
+		int chunks = Math.max(1, Math.min(threads * 4, size / 10_000));
+		if (chunks == 1) {
+			return encode(values);
+		}
+
+		int[] codes = new int[size];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// 1단계: 구간별 지역 사전과 지역 코드
+			List<Future<StringDictionary>> locals = new ArrayList<>(chunks);
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				int from = (int) ((long) size * chunk / chunks);
+				int to = (int) ((long) size * (chunk + 1) / chunks);
+				locals.add(executor.submit(() -> {
+					StringDictionary local = new StringDictionary();
+					for (int i = from; i < to; i++) {
+						codes[i] = encode(local, values.get(i), false);
+					}
+					return local;
+				}));
+			}
+
+			// 2단계: 구간 순서대로 전역 사전에 합치고 코드 변환표를 만든다
+			List<int[]> remaps = new ArrayList<>(chunks);
+			for (Future<StringDictionary> local : locals) {
+				StringDictionary localDictionary = await(local);
+				remaps.add(frozen ? dictionary.lookup(localDictionary) : dictionary.merge(localDictionary));
+			}
+
+			// 3단계: 지역 코드를 전역 코드로 바꾼다
+			List<Future<?>> rewrites = new ArrayList<>(chunks);
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				int from = (int) ((long) size * chunk / chunks);
+				int to = (int) ((long) size * (chunk + 1) / chunks);
+				int[] remap = remaps.get(chunk);
+				rewrites.add(executor.submit(() -> {
+					for (int i = from; i < to; i++) {
+						if (codes[i] != StringDictionary.MISSING) {
+							codes[i] = remap[codes[i]];
+						}
+					}
+				}));
+			}
+			for (Future<?> rewrite : rewrites) {
+				await(rewrite);
+			}
+			return codes;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static int encode(StringDictionary dictionary, Object value, boolean frozen) {
+		if (value == null) {
+			return StringDictionary.MISSING;
+		}
+		String key = value.toString();
+		return frozen ? dictionary.codeOf(key) : dictionary.encode(key);
+	}
+
+	private static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while encoding", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
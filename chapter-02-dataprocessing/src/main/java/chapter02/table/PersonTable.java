@@ -0,0 +1,336 @@
+package chapter02.table;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import org.apache.commons.lang3.Validate;
+
+import chapter02.Person;
+import chapter02.csv.MappedCsvParser;
+
+/**
+ * 사람 목록을 행 객체 대신 열 단위로 저장한다. 급여와 경력은 int[]에, 국가는 사전 코드로
+ * int[]에 담는다. 필터는 행 번호 배열(선택 벡터)을 돌려주고, 집계는 기본형 배열을 훑는다.
+ */
+public class PersonTable {
+
+	public enum Column {
+		COUNTRY, SALARY, EXPERIENCE
+	}
+
+	private final String[] names;
+	private final String[] emails;
+	private final int[] countries;
+	private final int[] salaries;
+	private final int[] experiences;
+	private final StringDictionary countryDictionary;
+	private final int size;
+
+	private PersonTable(Builder builder) {
+		this.size = builder.size;
+		this.names = Arrays.copyOf(builder.names, size);
+		this.emails = Arrays.copyOf(builder.emails, size);
+		this.countries = Arrays.copyOf(builder.countries, size);
+		this.salaries = Arrays.copyOf(builder.salaries, size);
+		this.experiences = Arrays.copyOf(builder.experiences, size);
+		this.countryDictionary = builder.countryDictionary;
+	}
+
+	public static PersonTable of(List<Person> people) {
+		Builder builder = new Builder(people.size());
+		for (Person person : people) {
+			builder.add(person);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * CSV/TSV 파일을 Person 객체를 거치지 않고 바로 열 단위로 읽는다.
+	 *
+	 * @param delimiter 구분자, CSV는 ',' TSV는 '\t'
+	 */
+	public static PersonTable read(Path file, char delimiter) throws IOException {
+		Builder builder = new Builder(1024);
+		CountryInterner countries = new CountryInterner(builder.countryDictionary);
+		MappedCsvParser parser = new MappedCsvParser(delimiter);
+		int[][] positions = new int[1][];
+		parser.parse(file, true, record -> {
+			if (positions[0] == null) {
+				positions[0] = new int[] { record.columnIndex("name"), record.columnIndex("email"),
+						record.columnIndex("country"), record.columnIndex("salary"),
+						record.columnIndex("experience") };
+			}
+			int[] p = positions[0];
+			builder.add(record.getString(p[0]), record.getString(p[1]), countries.codeOf(record, p[2]),
+					record.getInt(p[3]), record.getInt(p[4]));
+		});
+		return builder.build();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Person get(int row) {
+		return new Person(names[row], emails[row], countryDictionary.decode(countries[row]), salaries[row],
+				experiences[row]);
+	}
+
+	public List<Person> get(int[] rows) {
+		List<Person> result = new ArrayList<>(rows.length);
+		for (int row : rows) {
+			result.add(get(row));
+		}
+		return result;
+	}
+
+	public StringDictionary getCountryDictionary() {
+		return countryDictionary;
+	}
+
+	/**
+	 * country == value 필터. 문자열 비교 대신 코드 하나를 int[]에서 찾는다.
+	 *
+	 * @return 조건을 만족하는 행 번호, 오름차순
+	 */
+	public int[] whereCountry(String country) {
+		int code = countryDictionary.codeOf(country);
+		if (code == StringDictionary.MISSING) {
+			return new int[0];
+		}
+		return where(Column.COUNTRY, c -> c == code);
+	}
+
+	/**
+	 * @return predicate를 만족하는 행 번호, 오름차순
+	 */
+	public int[] where(Column column, IntPredicate predicate) {
+		int[] values = column(column);
+		int[] rows = new int[size];
+		int n = 0;
+		for (int row = 0; row < size; row++) {
+			if (predicate.test(values[row])) {
+				rows[n++] = row;
+			}
+		}
+		return Arrays.copyOf(rows, n);
+	}
+
+	/**
+	 * 이미 선택된 행 중에서 다시 거른다. 필터 여러 개를 AND로 연결할 때 사용한다.
+	 */
+	public int[] where(int[] rows, Column column, IntPredicate predicate) {
+		int[] values = column(column);
+		int[] result = new int[rows.length];
+		int n = 0;
+		for (int row : rows) {
+			if (predicate.test(values[row])) {
+				result[n++] = row;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	public long sum(Column column) {
+		int[] values = column(column);
+		long sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum = sum + values[i];
+		}
+		return sum;
+	}
+
+	public long sum(Column column, int[] rows) {
+		int[] values = column(column);
+		long sum = 0;
+		for (int row : rows) {
+			sum = sum + values[row];
+		}
+		return sum;
+	}
+
+	public double mean(Column column) {
+		return size == 0 ? Double.NaN : (double) sum(column) / size;
+	}
+
+	public double mean(Column column, int[] rows) {
+		return rows.length == 0 ? Double.NaN : (double) sum(column, rows) / rows.length;
+	}
+
+	public int min(Column column) {
+		Validate.isTrue(size > 0, "empty table");
+		int[] values = column(column);
+		int min = values[0];
+		for (int i = 1; i < size; i++) {
+			min = Math.min(min, values[i]);
+		}
+		return min;
+	}
+
+	public int max(Column column) {
+		Validate.isTrue(size > 0, "empty table");
+		int[] values = column(column);
+		int max = values[0];
+		for (int i = 1; i < size; i++) {
+			max = Math.max(max, values[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * 국가별 평균. 국가 코드를 배열 인덱스로 써서 한 번의 스캔으로 계산한다.
+	 *
+	 * @return 국가 이름 → 평균, 사전 순서
+	 */
+	public Map<String, Double> meanByCountry(Column column) {
+		int[] values = column(column);
+		long[] sums = new long[countryDictionary.size()];
+		int[] counts = new int[countryDictionary.size()];
+		for (int i = 0; i < size; i++) {
+			sums[countries[i]] += values[i];
+			counts[countries[i]]++;
+		}
+		Map<String, Double> result = new LinkedHashMap<>();
+		for (int code = 0; code < sums.length; code++) {
+			result.put(countryDictionary.decode(code), (double) sums[code] / counts[code]);
+		}
+		return result;
+	}
+
+	private int[] column(Column column) {
+		switch (column) {
+		case COUNTRY:
+			return countries;
+		case SALARY:
+			return salaries;
+		case EXPERIENCE:
+			return experiences;
+		default:
+			throw new IllegalArgumentException("unknown column " + column);
+		}
+	}
+
+	/**
+	 * 국가 필드를 바이트 해시로 찾아 사전 코드로 바꾼다. 문자열은 처음 보는 국가일 때만 만든다.
+	 */
+	private static class CountryInterner {
+
+		private final StringDictionary dictionary;
+		private int[] hashes = new int[64];
+		private int[] codes = new int[64];
+		private byte[][] values = new byte[16][];
+		private int size = 0;
+
+		CountryInterner(StringDictionary dictionary) {
+			this.dictionary = dictionary;
+			Arrays.fill(codes, StringDictionary.MISSING);
+		}
+
+		int codeOf(MappedCsvParser.Record record, int field) {
+			int hash = record.contentHash(field);
+			int mask = codes.length - 1;
+			int slot = hash & mask;
+			while (codes[slot] != StringDictionary.MISSING) {
+				if (hashes[slot] == hash && record.contentEquals(field, values[codes[slot]])) {
+					return codes[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			String value = record.getString(field);
+			int code = dictionary.encode(value);
+			if (code >= values.length) {
+				values = Arrays.copyOf(values, Math.max(values.length * 2, code + 1));
+			}
+			values[code] = value.getBytes(StandardCharsets.UTF_8);
+			hashes[slot] = hash;
+			codes[slot] = code;
+			size++;
+			if (size * 2 > codes.length) {
+				rehash();
+			}
+			return code;
+		}
+
+		private void rehash() {
+			int[] oldHashes = hashes;
+			int[] oldCodes = codes;
+			hashes = new int[oldCodes.length * 2];
+			codes = new int[oldCodes.length * 2];
+			Arrays.fill(codes, StringDictionary.MISSING);
+			int mask = codes.length - 1;
+			for (int i = 0; i < oldCodes.length; i++) {
+				if (oldCodes[i] != StringDictionary.MISSING) {
+					int slot = oldHashes[i] & mask;
+					while (codes[slot] != StringDictionary.MISSING) {
+						slot = (slot + 1) & mask;
+					}
+					hashes[slot] = oldHashes[i];
+					codes[slot] = oldCodes[i];
+				}
+			}
+		}
+	}
+
+	public static class Builder {
+
+		private String[] names;
+		private String[] emails;
+		private int[] countries;
+		private int[] salaries;
+		private int[] experiences;
+		private final StringDictionary countryDictionary = new StringDictionary();
+		private int size = 0;
+
+		public Builder() {
+			this(1024);
+		}
+
+		public Builder(int capacity) {
+			int initial = Math.max(16, capacity);
+			this.names = new String[initial];
+			this.emails = new String[initial];
+			this.countries = new int[initial];
+			this.salaries = new int[initial];
+			this.experiences = new int[initial];
+		}
+
+		public Builder add(Person person) {
+			return add(person.getName(), person.getEmail(), person.getCountry(), person.getSalary(),
+					person.getExperience());
+		}
+
+		public Builder add(String name, String email, String country, int salary, int experience) {
+			return add(name, email, countryDictionary.encode(country), salary, experience);
+		}
+
+		private Builder add(String name, String email, int country, int salary, int experience) {
+			if (size == salaries.length) {
+				int capacity = size * 2;
+				names = Arrays.copyOf(names, capacity);
+				emails = Arrays.copyOf(emails, capacity);
+				countries = Arrays.copyOf(countries, capacity);
+				salaries = Arrays.copyOf(salaries, capacity);
+				experiences = Arrays.copyOf(experiences, capacity);
+			}
+			names[size] = name;
+			emails[size] = email;
+			countries[size] = country;
+			salaries[size] = salary;
+			experiences[size] = experience;
+			size++;
+			return this;
+		}
+
+		public PersonTable build() {
+			return new PersonTable(this);
+		}
+	}
+}
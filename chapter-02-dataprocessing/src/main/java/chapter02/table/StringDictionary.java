@@ -0,0 +1,112 @@
+package chapter02.table;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 문자열 값을 0부터 시작하는 정수 코드로 바꾸는 사전. 같은 값이 여러 행에 반복되는
+ * 컬럼(국가 등)을 int[] 코드 배열과 사전 하나로 저장할 때 사용한다. 학습 때 만든 사전을
+ * 저장해 두면 예측할 때도 같은 코드를 쓸 수 있다. 스레드 안전하지 않다.
+ */
+public class StringDictionary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int MISSING = -1;
+
+	private final Map<String, Integer> codes = new HashMap<>();
+	private final List<String> values = new ArrayList<>();
+
+	/**
+	 * @return 값의 코드, 처음 보는 값이면 새 코드를 부여한다
+	 */
+	public int encode(String value) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = values.size();
+			codes.put(value, code);
+			values.add(value);
+		}
+		return code;
+	}
+
+	/**
+	 * @return 값의 코드, 사전에 없으면 {@link #MISSING}
+	 */
+	public int codeOf(String value) {
+		Integer code = codes.get(value);
+		return code == null ? MISSING : code;
+	}
+
+	/**
+	 * 다른 사전의 값들을 이 사전에 추가한다. 스레드별로 만든 사전을 하나로 합칠 때 사용한다.
+	 *
+	 * @return other의 코드 → 이 사전의 코드 변환표
+	 */
+	public int[] merge(StringDictionary other) {
+		int[] remap = new int[other.size()];
+		for (int code = 0; code < remap.length; code++) {
+			remap[code] = encode(other.decode(code));
+		}
+		return remap;
+	}
+
+	/**
+	 * {@link #merge(StringDictionary)}와 같지만 이 사전을 바꾸지 않는다. 없는 값은 {@link #MISSING}이 된다.
+	 */
+	public int[] lookup(StringDictionary other) {
+		int[] remap = new int[other.size()];
+		for (int code = 0; code < remap.length; code++) {
+			remap[code] = codeOf(other.decode(code));
+		}
+		return remap;
+	}
+
+	public String decode(int code) {
+		return values.get(code);
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public List<String> values() {
+		return Collections.unmodifiableList(values);
+	}
+
+	/**
+	 * 값을 코드 순서대로 저장한다. 형식은 값 개수(int) 다음에 값마다 UTF-8 길이(int)와 바이트이다.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(values.size());
+		for (String value : values) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			data.writeInt(bytes.length);
+			data.write(bytes);
+		}
+		data.flush();
+	}
+
+	public static StringDictionary readFrom(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		int size = data.readInt();
+		StringDictionary dictionary = new StringDictionary();
+		for (int i = 0; i < size; i++) {
+			byte[] bytes = new byte[data.readInt()];
+			data.readFully(bytes);
+			dictionary.encode(new String(bytes, StandardCharsets.UTF_8));
+		}
+		return dictionary;
+	}
+}
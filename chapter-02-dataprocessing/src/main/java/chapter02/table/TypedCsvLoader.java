@@ -0,0 +1,275 @@
+package chapter02.table;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import chapter02.table.TypedFrame.Column;
+import chapter02.table.TypedFrame.DoubleColumn;
+import chapter02.table.TypedFrame.IntColumn;
+import chapter02.table.TypedFrame.StringColumn;
+import chapter02.table.TypedFrame.Type;
+
+/**
+ * CSV를 {@link TypedFrame}으로 읽는다. 처음 몇 행을 보고 열마다 정수, 실수, 문자열 중 하나로
+ * 유형을 정하고 나머지 행은 바로 기본형 배열에 채운다. 표본 뒤에서 맞지 않는 값이 나오면
+ * 그 열만 정수 → 실수 → 문자열 순서로 넓힌다. "None" 같은 토큰은 누락된 값으로 처리한다.
+ */
+public class TypedCsvLoader {
+
+	private char delimiter = ',';
+	private int sampleSize = 1000;
+	private final Set<String> missing = new HashSet<>(Arrays.asList("", "None", "NA", "null"));
+	private final Map<String, Type> schema = new HashMap<>();
+
+	public TypedCsvLoader withDelimiter(char delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	/**
+	 * @param sampleSize 유형을 추론할 때 볼 행 수
+	 */
+	public TypedCsvLoader withSampleSize(int sampleSize) {
+		Validate.isTrue(sampleSize > 0, "sampleSize must be positive");
+		this.sampleSize = sampleSize;
+		return this;
+	}
+
+	/**
+	 * 누락된 값으로 볼 토큰을 정한다. 지정하지 않으면 빈 문자열, "None", "NA", "null"이다.
+	 */
+	public TypedCsvLoader withMissing(String... tokens) {
+		missing.clear();
+		missing.addAll(Arrays.asList(tokens));
+		return this;
+	}
+
+	/**
+	 * 열의 유형을 직접 지정한다. 지정한 열은 추론하지 않고, 맞지 않는 값이 있으면 예외를 던진다.
+	 */
+	public TypedCsvLoader withType(String column, Type type) {
+		schema.put(column, type);
+		return this;
+	}
+
+	public TypedFrame load(Path file) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return load(reader);
+		}
+	}
+
+	public TypedFrame load(Reader reader) throws IOException {
+		RecordReader records = new RecordReader(reader, delimiter);
+		List<String> header = records.next();
+		if (header == null) {
+			return new TypedFrame(new ArrayList<>(), new ArrayList<>());
+		}
+		int width = header.size();
+
+		List<List<String>> sample = new ArrayList<>();
+		List<String> record;
+		while (sample.size() < sampleSize && (record = records.next()) != null) {
+			sample.add(record);
+		}
+
+		Column[] columns = new Column[width];
+		boolean[] fixed = new boolean[width];
+		for (int c = 0; c < width; c++) {
+			Type type = schema.get(header.get(c));
+			fixed[c] = type != null;
+			columns[c] = create(fixed[c] ? type : infer(sample, c));
+			if (!fixed[c]) {
+				// 나중에 문자열로 넓혀도 "007"이 "7"이 되지 않도록 유형이 확정될 때까지 토큰을 보관한다
+				columns[c].keepTokens();
+			}
+		}
+
+		int row = 1;
+		for (List<String> values : sample) {
+			append(columns, fixed, header, values, ++row);
+		}
+		while ((record = records.next()) != null) {
+			append(columns, fixed, header, record, ++row);
+		}
+
+		for (Column column : columns) {
+			column.trim();
+		}
+		return new TypedFrame(header, Arrays.asList(columns));
+	}
+
+	private void append(Column[] columns, boolean[] fixed, List<String> header, List<String> values, int row)
+			throws IOException {
+		if (values.size() != columns.length) {
+			throw new IOException("row " + row + " has " + values.size() + " fields, expected " + columns.length);
+		}
+		for (int c = 0; c < columns.length; c++) {
+			String token = values.get(c);
+			if (missing.contains(token)) {
+				columns[c].appendMissing();
+				continue;
+			}
+			try {
+				columns[c].append(token);
+			} catch (NumberFormatException e) {
+				if (fixed[c]) {
+					throw new IllegalArgumentException("row " + row + ", column " + header.get(c) + ": cannot read '"
+							+ token + "' as " + columns[c].type(), e);
+				}
+				columns[c] = widen(columns[c], token);
+				columns[c].append(token);
+			}
+		}
+	}
+
+	private Type infer(List<List<String>> sample, int c) {
+		boolean allInts = true;
+		boolean allDoubles = true;
+		for (List<String> record : sample) {
+			if (c >= record.size() || missing.contains(record.get(c))) {
+				continue;
+			}
+			String token = record.get(c).trim();
+			if (allInts && !isInt(token)) {
+				allInts = false;
+			}
+			if (!allInts && !isDouble(token)) {
+				allDoubles = false;
+				break;
+			}
+		}
+		return allInts ? Type.INT : allDoubles ? Type.DOUBLE : Type.STRING;
+	}
+
+	private static Column create(Type type) {
+		switch (type) {
+		case INT:
+			return new IntColumn();
+		case DOUBLE:
+			return new DoubleColumn();
+		default:
+			return new StringColumn();
+		}
+	}
+
+	private static Column widen(Column column, String token) {
+		if (column.type() == Type.INT && isDouble(token.trim())) {
+			return ((IntColumn) column).toDoubles();
+		}
+		return StringColumn.of(column);
+	}
+
+	private static boolean isInt(String token) {
+		try {
+			Integer.parseInt(token);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static boolean isDouble(String token) {
+		try {
+			Double.parseDouble(token);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * RFC4180 레코드 읽기. 따옴표로 감싼 필드 안의 구분자, 줄바꿈, "" 이스케이프를 처리한다.
+	 */
+	private static class RecordReader {
+
+		private final Reader reader;
+		private final char delimiter;
+		private final StringBuilder field = new StringBuilder();
+		private final char[] buffer = new char[8192];
+		private int position = 0;
+		private int limit = 0;
+
+		RecordReader(Reader reader, char delimiter) {
+			this.reader = reader;
+			this.delimiter = delimiter;
+		}
+
+		/**
+		 * @return 다음 레코드의 필드들, 파일 끝이면 null. 빈 줄은 건너뛴다
+		 */
+		List<String> next() throws IOException {
+			while (true) {
+				int c = read();
+				if (c < 0) {
+					return null;
+				}
+				if (c == '\n' || c == '\r') {
+					continue;
+				}
+				return record(c);
+			}
+		}
+
+		private List<String> record(int first) throws IOException {
+			List<String> values = new ArrayList<>();
+			field.setLength(0);
+			boolean quoted = false;
+			int c = first;
+			while (true) {
+				if (quoted) {
+					if (c < 0) {
+						throw new IOException("unterminated quoted field");
+					}
+					if (c == '"') {
+						int peek = read();
+						if (peek == '"') {
+							field.append('"');
+						} else {
+							quoted = false;
+							c = peek;
+							continue;
+						}
+					} else {
+						field.append((char) c);
+					}
+				} else if (c == '"' && field.length() == 0) {
+					quoted = true;
+				} else if (c == delimiter) {
+					values.add(field.toString());
+					field.setLength(0);
+				} else if (c == '\n' || c == '\r' || c < 0) {
+					values.add(field.toString());
+					return values;
+				} else {
+					field.append((char) c);
+				}
+				c = read();
+			}
+		}
+
+		private int read() throws IOException {
+			if (position == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[position++];
+		}
+	}
+}
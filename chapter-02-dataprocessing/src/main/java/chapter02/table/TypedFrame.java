@@ -0,0 +1,533 @@
+package chapter02.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+import joinery.DataFrame;
+
+/**
+ * 열마다 기본형 배열을 쓰는 데이터 프레임. 정수 열은 int[], 실수 열은 double[], 문자열 열은
+ * 사전 코드 int[]로 저장하므로 값마다 객체를 만들지 않는다. 모델 학습용 double[][]로 바로
+ * 바꾸거나 필요할 때만 joinery DataFrame으로 바꿀 수 있다.
+ */
+public class TypedFrame {
+
+	public enum Type {
+		INT, DOUBLE, STRING
+	}
+
+	private final List<String> names;
+	private final Map<String, Column> columns;
+	private final int rows;
+
+	TypedFrame(List<String> names, List<Column> columns) {
+		Validate.isTrue(names.size() == columns.size(), "names and columns differ in size");
+		this.names = Collections.unmodifiableList(new ArrayList<>(names));
+		this.columns = new LinkedHashMap<>();
+		for (int i = 0; i < names.size(); i++) {
+			this.columns.put(names.get(i), columns.get(i));
+		}
+		this.rows = columns.isEmpty() ? 0 : columns.get(0).size();
+	}
+
+	public int rows() {
+		return rows;
+	}
+
+	public List<String> columns() {
+		return names;
+	}
+
+	public List<String> columns(Type type) {
+		List<String> result = new ArrayList<>();
+		for (String name : names) {
+			if (columns.get(name).type() == type) {
+				result.add(name);
+			}
+		}
+		return result;
+	}
+
+	public Type type(String column) {
+		return column(column).type();
+	}
+
+	public Column column(String column) {
+		Column result = columns.get(column);
+		Validate.isTrue(result != null, "no column %s", column);
+		return result;
+	}
+
+	/**
+	 * 숫자 열을 double[]로 반환한다. 누락된 값은 NaN이다. 데이터에 있던 "NaN"과 구별하려면
+	 * {@link Column#isMissing(int)}를 쓴다.
+	 */
+	public double[] doubles(String column) {
+		Column c = column(column);
+		Validate.isTrue(c.type() != Type.STRING, "column %s is not numeric", column);
+		double[] result = new double[rows];
+		for (int i = 0; i < rows; i++) {
+			result[i] = c.getDouble(i);
+		}
+		return result;
+	}
+
+	/**
+	 * 정수 열의 값 배열. 누락된 값의 자리는 0이므로 {@link Column#isMissing(int)}로 확인한다.
+	 */
+	public int[] ints(String column) {
+		Column c = column(column);
+		Validate.isTrue(c.type() == Type.INT, "column %s is not an int column", column);
+		return ((IntColumn) c).values;
+	}
+
+	/**
+	 * 문자열 열의 사전 코드. 누락된 값은 -1이다.
+	 */
+	public int[] codes(String column) {
+		return stringColumn(column).codes;
+	}
+
+	public List<String> levels(String column) {
+		return stringColumn(column).dictionary.values();
+	}
+
+	/**
+	 * @return 문자열 열의 사전, 예측할 때 같은 코드를 쓰도록 저장해 둘 수 있다
+	 */
+	public StringDictionary dictionary(String column) {
+		return stringColumn(column).dictionary;
+	}
+
+	/**
+	 * @return 값 → 개수, 개수가 많은 순서
+	 */
+	public Map<String, Integer> levelCounts(String column) {
+		StringColumn c = stringColumn(column);
+		int[] counts = c.counts();
+		Integer[] order = new Integer[counts.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(counts[b], counts[a]));
+		Map<String, Integer> result = new LinkedHashMap<>();
+		for (int code : order) {
+			result.put(c.dictionary.decode(code), counts[code]);
+		}
+		return result;
+	}
+
+	/**
+	 * 개수가 minCount보다 적은 값들을 other 하나로 합친다.
+	 */
+	public void lumpRare(String column, int minCount, String other) {
+		stringColumn(column).lumpRare(minCount, other);
+	}
+
+	/**
+	 * @return 주어진 열을 뺀 새 프레임, 열 데이터는 공유한다
+	 */
+	public TypedFrame drop(String... drop) {
+		List<String> keep = new ArrayList<>(names);
+		keep.removeAll(Arrays.asList(drop));
+		List<Column> kept = new ArrayList<>();
+		for (String name : keep) {
+			kept.add(columns.get(name));
+		}
+		return new TypedFrame(keep, kept);
+	}
+
+	/**
+	 * 모델 행렬을 만든다. 숫자 열은 그대로 쓰고 누락된 값은 fillValue로 채운다. 문자열 열은
+	 * 처음 나온 값을 기준 수준으로 두고 나머지 수준마다 0/1 열을 하나씩 만든다. 값이 누락된 행은
+	 * 그 열의 0/1 열을 모두 fillValue로 채우므로, fillValue가 0이면 기준 수준과 같아진다.
+	 */
+	public double[][] toModelMatrix(double fillValue) {
+		int width = 0;
+		for (Column c : columns.values()) {
+			width = width + (c.type() == Type.STRING ? Math.max(0, ((StringColumn) c).dictionary.size() - 1) : 1);
+		}
+		double[][] matrix = new double[rows][width];
+		int offset = 0;
+		for (Column c : columns.values()) {
+			if (c.type() == Type.STRING) {
+				StringColumn s = (StringColumn) c;
+				int dummies = Math.max(0, s.dictionary.size() - 1);
+				for (int i = 0; i < rows; i++) {
+					int code = s.codes[i];
+					if (code == StringDictionary.MISSING) {
+						Arrays.fill(matrix[i], offset, offset + dummies, fillValue);
+					} else if (code > 0) {
+						matrix[i][offset + code - 1] = 1.0;
+					}
+				}
+				offset = offset + dummies;
+			} else {
+				for (int i = 0; i < rows; i++) {
+					matrix[i][offset] = c.isMissing(i) ? fillValue : c.getDouble(i);
+				}
+				offset++;
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * joinery DataFrame으로 바꾼다. 정수는 Integer, 실수는 Double, 누락된 값은 null이 된다.
+	 */
+	public DataFrame<Object> toDataFrame() {
+		DataFrame<Object> df = new DataFrame<>();
+		for (String name : names) {
+			Column c = columns.get(name);
+			List<Object> values = new ArrayList<>(rows);
+			for (int i = 0; i < rows; i++) {
+				values.add(c.get(i));
+			}
+			df.add(name, values);
+		}
+		return df;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("TypedFrame [rows=").append(rows).append(", columns=");
+		List<String> described = new ArrayList<>();
+		for (String name : names) {
+			described.add(name + ":" + columns.get(name).type());
+		}
+		return sb.append(described).append(']').toString();
+	}
+
+	private StringColumn stringColumn(String column) {
+		Column c = column(column);
+		Validate.isTrue(c.type() == Type.STRING, "column %s is not a string column", column);
+		return (StringColumn) c;
+	}
+
+	public abstract static class Column {
+
+		public abstract Type type();
+
+		public abstract int size();
+
+		public abstract boolean isMissing(int row);
+
+		/**
+		 * @return 숫자 값, 누락되었으면 NaN
+		 */
+		public abstract double getDouble(int row);
+
+		/**
+		 * @return 박싱된 값, 누락되었으면 null
+		 */
+		public abstract Object get(int row);
+
+		/**
+		 * @return 문자열 열로 넓힐 때 쓸 값, 읽은 토큰을 보관하고 있으면 그 토큰
+		 */
+		abstract String token(int row);
+
+		abstract void append(String token);
+
+		abstract void appendMissing();
+
+		abstract void trim();
+
+		/**
+		 * 유형이 확정될 때까지({@link #trim()}까지) 읽은 토큰을 보관한다. 숫자 열만 의미가 있다.
+		 */
+		void keepTokens() {
+		}
+	}
+
+	static class IntColumn extends Column {
+
+		int[] values = new int[1024];
+		final BitSet missing = new BitSet();
+		int size = 0;
+		RawTokens raw;
+
+		@Override
+		public Type type() {
+			return Type.INT;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isMissing(int row) {
+			return missing.get(row);
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return missing.get(row) ? Double.NaN : values[row];
+		}
+
+		@Override
+		public Object get(int row) {
+			return missing.get(row) ? null : values[row];
+		}
+
+		@Override
+		String token(int row) {
+			String token = raw == null ? null : raw.get(row);
+			return token != null ? token : Integer.toString(values[row]);
+		}
+
+		@Override
+		void append(String token) {
+			int value = Integer.parseInt(token.trim());
+			if (raw != null) {
+				raw.put(size, token, Integer.toString(value));
+			}
+			grow();
+			values[size++] = value;
+		}
+
+		@Override
+		void appendMissing() {
+			grow();
+			missing.set(size++);
+		}
+
+		@Override
+		void trim() {
+			values = Arrays.copyOf(values, size);
+			raw = null;
+		}
+
+		@Override
+		void keepTokens() {
+			raw = new RawTokens();
+		}
+
+		private void grow() {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+		}
+
+		/**
+		 * 실수 열로 바꾼다. 지금까지 읽은 값은 나중에 문자열로 넓히더라도 정수 형식으로 돌려준다.
+		 */
+		DoubleColumn toDoubles() {
+			DoubleColumn result = new DoubleColumn();
+			result.values = new double[Math.max(1024, values.length)];
+			for (int i = 0; i < size; i++) {
+				result.values[i] = values[i];
+			}
+			result.missing.or(missing);
+			result.size = size;
+			result.intRows = size;
+			result.raw = raw;
+			return result;
+		}
+	}
+
+	static class DoubleColumn extends Column {
+
+		double[] values = new double[1024];
+		final BitSet missing = new BitSet();
+		int size = 0;
+		int intRows = 0;
+		RawTokens raw;
+
+		@Override
+		public Type type() {
+			return Type.DOUBLE;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isMissing(int row) {
+			return missing.get(row);
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return missing.get(row) ? Double.NaN : values[row];
+		}
+
+		@Override
+		public Object get(int row) {
+			return missing.get(row) ? null : values[row];
+		}
+
+		@Override
+		String token(int row) {
+			String token = raw == null ? null : raw.get(row);
+			if (token != null) {
+				return token;
+			}
+			return row < intRows ? Integer.toString((int) values[row]) : Double.toString(values[row]);
+		}
+
+		@Override
+		void append(String token) {
+			double value = Double.parseDouble(token.trim());
+			if (raw != null) {
+				raw.put(size, token, Double.toString(value));
+			}
+			grow();
+			values[size++] = value;
+		}
+
+		@Override
+		void appendMissing() {
+			grow();
+			missing.set(size++);
+		}
+
+		@Override
+		void trim() {
+			values = Arrays.copyOf(values, size);
+			raw = null;
+		}
+
+		@Override
+		void keepTokens() {
+			raw = new RawTokens();
+		}
+
+		private void grow() {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+		}
+	}
+
+	/**
+	 * 유형이 정해지지 않은 숫자 열이 읽은 토큰 중 숫자를 다시 문자열로 바꿨을 때 달라지는 것("007",
+	 * "1.50", " 5")만 행 번호별로 보관한다. 열을 문자열로 넓혀도 원래 토큰이 그대로 남는다.
+	 */
+	static class RawTokens {
+
+		private final Map<Integer, String> tokens = new HashMap<>();
+
+		void put(int row, String token, String rendered) {
+			if (!token.equals(rendered)) {
+				tokens.put(row, token);
+			}
+		}
+
+		String get(int row) {
+			return tokens.get(row);
+		}
+	}
+
+	static class StringColumn extends Column {
+
+		int[] codes = new int[1024];
+		StringDictionary dictionary = new StringDictionary();
+		int size = 0;
+
+		@Override
+		public Type type() {
+			return Type.STRING;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isMissing(int row) {
+			return codes[row] < 0;
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return Double.NaN;
+		}
+
+		@Override
+		public Object get(int row) {
+			return codes[row] < 0 ? null : dictionary.decode(codes[row]);
+		}
+
+		@Override
+		String token(int row) {
+			return dictionary.decode(codes[row]);
+		}
+
+		@Override
+		void append(String token) {
+			grow();
+			codes[size++] = dictionary.encode(token);
+		}
+
+		@Override
+		void appendMissing() {
+			grow();
+			codes[size++] = StringDictionary.MISSING;
+		}
+
+		@Override
+		void trim() {
+			codes = Arrays.copyOf(codes, size);
+		}
+
+		int[] counts() {
+			int[] counts = new int[dictionary.size()];
+			for (int i = 0; i < size; i++) {
+				if (codes[i] >= 0) {
+					counts[codes[i]]++;
+				}
+			}
+			return counts;
+		}
+
+		void lumpRare(int minCount, String other) {
+			int[] counts = counts();
+			StringDictionary lumped = new StringDictionary();
+			int[] remap = new int[counts.length];
+			for (int code = 0; code < remap.length; code++) {
+				remap[code] = lumped.encode(counts[code] >= minCount ? dictionary.decode(code) : other);
+			}
+			for (int i = 0; i < size; i++) {
+				if (codes[i] >= 0) {
+					codes[i] = remap[codes[i]];
+				}
+			}
+			dictionary = lumped;
+		}
+
+		private void grow() {
+			if (size == codes.length) {
+				codes = Arrays.copyOf(codes, size * 2);
+			}
+		}
+
+		/**
+		 * 숫자 열을 문자열 열로 바꾼다. 값은 그 열이 읽은 토큰 그대로이다.
+		 */
+		static StringColumn of(Column column) {
+			StringColumn result = new StringColumn();
+			for (int i = 0; i < column.size(); i++) {
+				if (column.isMissing(i)) {
+					result.appendMissing();
+				} else {
+					result.append(column.token(i));
+				}
+			}
+			return result;
+		}
+	}
+}
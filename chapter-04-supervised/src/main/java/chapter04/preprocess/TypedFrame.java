@@ -0,0 +1,296 @@
+package chapter04.preprocess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * 사례연구용 CSV 데이터 프레임. 파일 전체를 읽은 뒤 열마다 모든 값이 숫자면 double[]로,
+ * 아니면 사전 코드 int[]로 저장한다. 유형을 전체 값을 보고 정하므로 읽는 도중에 유형을
+ * 넓히는 일이 없고, 누락된 값으로 볼 토큰은 호출하는 쪽이 정한다.
+ */
+public class TypedFrame {
+
+    public enum Type {
+        DOUBLE, STRING
+    }
+
+    private final List<String> names;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private final int rows;
+
+    private TypedFrame(List<String> names, List<String[]> records, Set<String> missing) {
+        this.names = Collections.unmodifiableList(names);
+        this.rows = records.size();
+        for (int c = 0; c < names.size(); c++) {
+            columns.put(names.get(c), Column.of(records, c, missing));
+        }
+    }
+
+    /**
+     * 쉼표로 구분된 파일을 읽는다. 따옴표로 감싼 필드 안의 쉼표와 "" 이스케이프를 처리한다.
+     *
+     * @param missing 누락된 값으로 볼 토큰, 숫자 열에서는 NaN이 되고 따로 표시된다
+     */
+    public static TypedFrame readCsv(Path file, String... missing) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            Validate.isTrue(line != null, "empty file %s", file);
+            List<String> header = Arrays.asList(split(line));
+            List<String[]> records = new ArrayList<>();
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] record = split(line);
+                if (record.length != header.size()) {
+                    throw new IOException("line " + (records.size() + 2) + " has " + record.length
+                            + " fields, expected " + header.size());
+                }
+                records.add(record);
+            }
+            return new TypedFrame(header, records, new HashSet<>(Arrays.asList(missing)));
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public List<String> columns() {
+        return names;
+    }
+
+    public List<String> columns(Type type) {
+        List<String> result = new ArrayList<>();
+        for (String name : names) {
+            if (columns.get(name).type == type) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 숫자 열을 double[]로 반환한다. 누락된 값은 NaN이며, 파일에 적힌 NaN과 구분하려면
+     * {@link #isMissing(String, int)}를 쓴다.
+     */
+    public double[] doubles(String column) {
+        return column(column, Type.DOUBLE).values.clone();
+    }
+
+    public boolean isMissing(String column, int row) {
+        Column c = columns.get(column);
+        Validate.isTrue(c != null, "no column %s", column);
+        return c.type == Type.STRING ? c.codes[row] < 0 : c.missing.get(row);
+    }
+
+    /**
+     * @return 값 → 개수, 개수가 많은 순서
+     */
+    public Map<String, Integer> levelCounts(String column) {
+        Column c = column(column, Type.STRING);
+        int[] counts = c.counts();
+        Integer[] order = new Integer[counts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(counts[b], counts[a]));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int code : order) {
+            result.put(c.levels.get(code), counts[code]);
+        }
+        return result;
+    }
+
+    /**
+     * 개수가 minCount보다 적은 값들을 other 하나로 합친다.
+     */
+    public void lumpRare(String column, int minCount, String other) {
+        Column c = column(column, Type.STRING);
+        int[] counts = c.counts();
+        List<String> levels = new ArrayList<>();
+        int[] remap = new int[counts.length];
+        for (int code = 0; code < remap.length; code++) {
+            String level = counts[code] >= minCount ? c.levels.get(code) : other;
+            int index = levels.indexOf(level);
+            if (index < 0) {
+                index = levels.size();
+                levels.add(level);
+            }
+            remap[code] = index;
+        }
+        for (int i = 0; i < rows; i++) {
+            if (c.codes[i] >= 0) {
+                c.codes[i] = remap[c.codes[i]];
+            }
+        }
+        c.levels = levels;
+    }
+
+    /**
+     * 모델 행렬을 만든다. 숫자 열은 그대로 쓰고 누락된 값은 fillValue로 채운다. 문자열 열은
+     * 처음 나온 값을 기준 수준으로 두고 나머지 수준마다 0/1 열을 하나씩 만든다. 누락된 문자열
+     * 값은 기준 수준과 구분되도록 그 열의 0/1 열을 모두 fillValue로 채운다. fillValue가 0이면
+     * 기준 수준과 같아진다.
+     */
+    public double[][] toModelMatrix(double fillValue) {
+        int width = 0;
+        for (Column c : columns.values()) {
+            width = width + (c.type == Type.STRING ? Math.max(0, c.levels.size() - 1) : 1);
+        }
+        double[][] matrix = new double[rows][width];
+        int offset = 0;
+        for (Column c : columns.values()) {
+            if (c.type == Type.STRING) {
+                int dummies = Math.max(0, c.levels.size() - 1);
+                for (int i = 0; i < rows; i++) {
+                    if (c.codes[i] < 0) {
+                        Arrays.fill(matrix[i], offset, offset + dummies, fillValue);
+                    } else if (c.codes[i] > 0) {
+                        matrix[i][offset + c.codes[i] - 1] = 1.0;
+                    }
+                }
+                offset = offset + dummies;
+            } else {
+                for (int i = 0; i < rows; i++) {
+                    matrix[i][offset] = c.missing.get(i) ? fillValue : c.values[i];
+                }
+                offset++;
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public String toString() {
+        List<String> described = new ArrayList<>();
+        for (String name : names) {
+            described.add(name + ":" + columns.get(name).type);
+        }
+        return "TypedFrame [rows=" + rows + ", columns=" + described + "]";
+    }
+
+    private Column column(String column, Type type) {
+        Column result = columns.get(column);
+        Validate.isTrue(result != null, "no column %s", column);
+        Validate.isTrue(result.type == type, "column %s is not %s", column, type);
+        return result;
+    }
+
+    private static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    private static class Column {
+
+        Type type;
+        double[] values;
+        BitSet missing;
+        int[] codes;
+        List<String> levels;
+
+        static Column of(List<String[]> records, int c, Set<String> missing) {
+            Column column = new Column();
+            column.type = Type.DOUBLE;
+            for (String[] record : records) {
+                if (!missing.contains(record[c]) && !isDouble(record[c])) {
+                    column.type = Type.STRING;
+                    break;
+                }
+            }
+
+            int rows = records.size();
+            if (column.type == Type.DOUBLE) {
+                column.values = new double[rows];
+                column.missing = new BitSet(rows);
+                for (int i = 0; i < rows; i++) {
+                    String token = records.get(i)[c];
+                    if (missing.contains(token)) {
+                        column.values[i] = Double.NaN;
+                        column.missing.set(i);
+                    } else {
+                        column.values[i] = Double.parseDouble(token);
+                    }
+                }
+                return column;
+            }
+
+            column.codes = new int[rows];
+            column.levels = new ArrayList<>();
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < rows; i++) {
+                String token = records.get(i)[c];
+                if (missing.contains(token)) {
+                    column.codes[i] = -1;
+                    continue;
+                }
+                Integer code = index.get(token);
+                if (code == null) {
+                    code = column.levels.size();
+                    index.put(token, code);
+                    column.levels.add(token);
+                }
+                column.codes[i] = code;
+            }
+            return column;
+        }
+
+        int[] counts() {
+            int[] counts = new int[levels.size()];
+            for (int code : codes) {
+                if (code >= 0) {
+                    counts[code]++;
+                }
+            }
+            return counts;
+        }
+
+        private static boolean isDouble(String token) {
+            try {
+                Double.parseDouble(token);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
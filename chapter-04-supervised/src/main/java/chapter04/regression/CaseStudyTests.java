@@ -5,23 +5,17 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Multiset;
-import com.google.common.collect.Multisets;
-import com.google.common.primitives.Doubles;
-
 import chapter04.cv.Dataset;
 import chapter04.cv.Split;
-import joinery.DataFrame;
+import chapter04.preprocess.TypedFrame;
 import smile.regression.LASSO;
 import smile.regression.OLS;
 import smile.regression.Regression;
@@ -40,54 +34,27 @@ public class CaseStudyTests {
      * @throws IOException
      */
     public static void prepareData() throws IOException {
-		// 특성 정보를 읽는다.
-		DataFrame<Object> dataframe = DataFrame.readCsv("data/performance/x_train.csv");
+		// 특성 정보를 읽는다. "None"만 누락된 값으로 읽으므로 memFreq, memtRFC는 바로 실수 열이 된다.
+		TypedFrame dataframe = TypedFrame.readCsv(Paths.get("data/performance/x_train.csv"), "None");
 
 		// 레이블 값을 읽는다.
-		DataFrame<Object> targetDf = DataFrame.readCsv("data/performance/y_train.csv");
-		List<Double> targetList = targetDf.cast(Double.class).col("time");
-		double[] target = Doubles.toArray(targetList);
-
-		// 누락된 값을 제거한다.
-        List<Object> memfreq = noneToNull(dataframe.col("memFreq"));
-        List<Object> memtRFC = noneToNull(dataframe.col("memtRFC"));
-        dataframe = dataframe.drop("memFreq", "memtRFC");
-        dataframe.add("memFreq", memfreq);
-        dataframe.add("memtRFC", memtRFC);
-
-        // 원본 프레임을 포함하는 데이터 프레임 생성
-        List<Object> types = dataframe.types().stream().map(c -> c.getSimpleName()).collect(Collectors.toList());
-        List<Object> columns = new ArrayList<>(dataframe.columns());
-        DataFrame<Object> typesDf = new DataFrame<>();
-        typesDf.add("column", columns);
-        typesDf.add("type", types);
+		TypedFrame targetDf = TypedFrame.readCsv(Paths.get("data/performance/y_train.csv"));
+		double[] target = targetDf.doubles("time");
 
         // String 유형만을 선택한다.
-        DataFrame<Object> stringTypes = typesDf.select(p -> p.get(1).equals("String"));
-        System.out.println(stringTypes.toString());
-
-        // 범주형 변수를 얻는다.
-        DataFrame<Object> categorical = dataframe.retain(stringTypes.col("column").toArray());
+        List<String> categorical = dataframe.columns(TypedFrame.Type.STRING);
         System.out.println(categorical);
 
-        dataframe = dataframe.drop(stringTypes.col("column").toArray());
-
         // 범주형 데이터의 숫자를 센다.
-        for (Object column : categorical.columns()) {
-            List<Object> data = categorical.col(column);
-            Multiset<Object> counts = HashMultiset.create(data);
-            int nunique = counts.entrySet().size();
-            Multiset<Object> countsSorted = Multisets.copyHighestCountFirst(counts);
-
-            System.out.print(column + "\t" + nunique + "\t" + countsSorted);
-            List<Object> cleaned = data.stream()
-                    .map(o -> counts.count(o) >= 50 ? o : "OTHER")
-                    .collect(Collectors.toList());
-
-            dataframe.add(column, cleaned);
+        for (String column : categorical) {
+            Map<String, Integer> countsSorted = dataframe.levelCounts(column);
+            int nunique = countsSorted.size();
+
+            System.out.println(column + "\t" + nunique + "\t" + countsSorted);
+            dataframe.lumpRare(column, 50, "OTHER");
         }
 
-        System.out.println(dataframe.head());
+        System.out.println(dataframe);
 
         // 원 핫 인코딩 스키마를 적용한다.
         double[][] X = dataframe.toModelMatrix(0.0);
@@ -194,26 +161,4 @@ public class CaseStudyTests {
 
         return result;
     }
-
-    /**
-     * 문자열 "None"을 null로 변환한다.
-     * 
-     * @param memfreq 변환 대상
-     * @return 변환 된 데이터
-     */
-    private static List<Object> noneToNull(List<Object> memfreq) {
-        return memfreq.stream()
-                .map(s -> isNone(s) ? null : Double.parseDouble(s.toString()))
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * 문자열이 "None"인지 확인
-     * 
-     * @param s 대상 문자열
-     * @return "None" 여부
-     */
-    private static boolean isNone(Object s) {
-        return "None".equals(s);
-    }
 }